@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * CylinderPickerBench.fx - Part of a JavaFX 3D, and touch API, example that
+ *                          uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.cylinderpicker;
+
+import javafx.geometry.Point3D;
+import javafx.scene.image.Image;
+import projavafx.zenguitar3d.bench.MicroBench;
+
+/**
+ * Benchmarks for mapping rotation angles and picked points to faces.
+ */
+public class CylinderPickerBench {
+  public static void addTo(MicroBench bench) {
+    CylinderPicker picker = new CylinderPicker(300, 300, 20, 0, (Image)null);
+
+    double[] angles = new double[64];
+    Point3D[] points = new Point3D[64];
+    for (int idx = 0; idx < angles.length; idx++) {
+      angles[idx] = idx * 360.0 / angles.length - 90;
+      double theta = Math.toRadians(angles[idx]);
+      points[idx] = new Point3D(150 * Math.sin(theta), 0,
+                                150 * Math.cos(theta));
+    }
+    int[] counter = new int[1];
+
+    bench.add("CylinderPicker.getFaceForAngle", () ->
+      picker.getFaceForAngle(angles[counter[0]++ & 63]));
+    bench.add("CylinderPicker.getFaceForPoint3D", () ->
+      picker.getFaceForPoint3D(points[counter[0]++ & 63]));
+  }
+}
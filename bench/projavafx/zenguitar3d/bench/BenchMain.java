@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * BenchMain.fx - Part of a JavaFX 3D, and touch API, example that
+ *                uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.bench;
+
+import projavafx.cylinderpicker.CylinderPickerBench;
+import projavafx.zenguitar3d.model.InstConfigBench;
+import projavafx.zenguitar3d.ui.GuitarString3DBench;
+
+/**
+ * Runs the hot path benchmarks without a display or sound card, e.g.
+ *
+ *   java -cp out:lib/JFugue5.jar -Dbench.time=1000 \
+ *     projavafx.zenguitar3d.bench.BenchMain GuitarString3D
+ *
+ * The optional argument is a regular expression selecting benchmarks
+ * by name.
+ */
+public class BenchMain {
+  public static void main(String[] args) {
+    MicroBench bench = new MicroBench();
+    GuitarString3DBench.addTo(bench);
+    MidiPathBench.addTo(bench);
+    CylinderPickerBench.addTo(bench);
+    InstConfigBench.addTo(bench);
+    bench.run(args.length > 0 ? args[0] : null);
+    System.exit(0);
+  }
+}
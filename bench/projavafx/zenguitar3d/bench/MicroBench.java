@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * MicroBench.fx - Part of a JavaFX 3D, and touch API, example that
+ *                 uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A small JMH-style harness for the hot paths.  Each benchmark runs for
+ * a number of timed warmup and measurement iterations on the calling
+ * thread, and reports throughput along with the bytes allocated per
+ * operation (the same figure as JMH's gc.alloc.rate.norm), read from
+ * the thread's allocation counter.
+ *
+ * Settings come from system properties: bench.warmup and
+ * bench.iterations (iteration counts) and bench.time (milliseconds per
+ * iteration).
+ */
+public class MicroBench {
+  /**
+   * One benchmarked operation.  The result is consumed by the harness
+   * so the JIT can't remove the work.
+   */
+  public interface Op {
+    public abstract long run();
+  }
+
+  private static int WARMUP_ITERATIONS =
+    Integer.getInteger("bench.warmup", 3);
+  private static int MEASURE_ITERATIONS =
+    Integer.getInteger("bench.iterations", 5);
+  private static long ITERATION_MILLIS =
+    Long.getLong("bench.time", 500);
+
+  // Operations run between clock checks
+  private static int BATCH = 1000;
+
+  private static com.sun.management.ThreadMXBean _threadBean =
+    (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  private List<String> _names = new ArrayList<>();
+  private List<Op> _ops = new ArrayList<>();
+
+  // Sink for benchmark results, read once at the end of each run
+  private long _blackhole;
+
+  public void add(String name, Op op) {
+    _names.add(name);
+    _ops.add(op);
+  }
+
+  /**
+   * Runs every benchmark whose name matches the regular expression,
+   * or all of them if filter is null.
+   */
+  public void run(String filter) {
+    Pattern pattern = filter == null ? null : Pattern.compile(filter);
+    System.out.printf("%-48s %14s %10s %10s%n",
+                      "Benchmark", "ops/s", "ns/op", "B/op");
+    for (int idx = 0; idx < _ops.size(); idx++) {
+      String name = _names.get(idx);
+      if (pattern == null || pattern.matcher(name).find()) {
+        runOne(name, _ops.get(idx));
+      }
+    }
+    if (_blackhole == 42) {
+      System.out.println();
+    }
+  }
+
+  private void runOne(String name, Op op) {
+    for (int iter = 0; iter < WARMUP_ITERATIONS; iter++) {
+      iteration(op);
+    }
+    long totalOps = 0;
+    long totalNanos = 0;
+    long totalBytes = 0;
+    for (int iter = 0; iter < MEASURE_ITERATIONS; iter++) {
+      long[] result = iteration(op);
+      totalOps += result[0];
+      totalNanos += result[1];
+      totalBytes += result[2];
+    }
+    double opsPerSec = totalOps * 1e9 / totalNanos;
+    System.out.printf("%-48s %14.0f %10.1f %10.1f%n", name, opsPerSec,
+                      (double)totalNanos / totalOps,
+                      (double)totalBytes / totalOps);
+  }
+
+  // Returns {ops, nanos, bytes allocated}
+  private long[] iteration(Op op) {
+    long threadId = Thread.currentThread().getId();
+    long deadline = System.nanoTime() + ITERATION_MILLIS * 1000000;
+    long ops = 0;
+    long sink = 0;
+    long bytesBefore = _threadBean.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    long now;
+    do {
+      for (int idx = 0; idx < BATCH; idx++) {
+        sink += op.run();
+      }
+      ops += BATCH;
+      now = System.nanoTime();
+    } while (now < deadline);
+    long bytes = _threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+    _blackhole += sink;
+    return new long[] {ops, now - start, bytes};
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * MidiPathBench.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.bench;
+
+import org.jfugue.parser.ParserListenerAdapter;
+import org.jfugue.theory.Note;
+import org.staccato.StaccatoParser;
+import projavafx.zenguitar3d.audio.DirectMidiSink;
+import projavafx.zenguitar3d.audio.SynthEngine;
+
+/**
+ * Compares building note-on/off messages directly with building and
+ * parsing the JFugue patterns that the fallback path plays.
+ */
+public class MidiPathBench {
+  public static void addTo(MicroBench bench) {
+    StubReceiver receiver = new StubReceiver();
+    DirectMidiSink directSink = new DirectMidiSink(receiver);
+    SynthEngine synthEngine = new SynthEngine(directSink);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(new ParserListenerAdapter());
+    int[] counter = new int[1];
+
+    bench.add("DirectMidiSink.noteOn+noteOff", () -> {
+      int noteValue = 40 + (counter[0]++ & 31);
+      directSink.noteOn(0, noteValue, 64);
+      directSink.noteOff(0, noteValue);
+      return receiver.getChecksum();
+    });
+
+    bench.add("SynthEngine.noteOn+noteOff", () -> {
+      int noteValue = 40 + (counter[0]++ & 31);
+      synthEngine.noteOn(0, noteValue, 64);
+      synthEngine.noteOff(0, noteValue);
+      return receiver.getChecksum();
+    });
+
+    bench.add("JFugue pattern build+parse", () -> {
+      int noteValue = 40 + (counter[0]++ & 31);
+      Note note = new Note(noteValue);
+      note.setAttackVelocity((byte)64);
+      parser.parse(note.getPattern() + "s-");
+      parser.parse(new Note(noteValue).getPattern() + "-s");
+      return noteValue;
+    });
+  }
+}
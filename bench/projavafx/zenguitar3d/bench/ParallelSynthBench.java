@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ParallelSynthBench.fx - Part of a JavaFX 3D, and touch API, example that
+ *                         uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.bench;
+
+import projavafx.zenguitar3d.audio.ParallelSynthSink;
+import projavafx.zenguitar3d.audio.SynthEngine;
+
+/**
+ * Measures how ParallelSynthSink scales with cores, rendering into a
+ * null sink so no audio hardware is needed.  For each number of voice
+ * groups it holds the same set of sustained, bending notes spread over
+ * the string channels, renders as fast as it can, and reports the real
+ * time factor and the voices that could be sustained in real time, in
+ * total and per core used.
+ *
+ *   java -cp out:lib/JFugue5.jar projavafx.zenguitar3d.bench.ParallelSynthBench [voices]
+ *
+ * System properties:
+ *   bench.groups=1,2,4   voice group counts to measure, by default
+ *                        powers of two up to the number of cores
+ *   bench.audio=secs     seconds of audio rendered per run, default 10
+ */
+public class ParallelSynthBench {
+  // String Ensemble 1, which sustains while held
+  static int INSTRUMENT = 48;
+  static int NUM_STRINGS = 10;
+
+  public static void main(String[] args) throws Exception {
+    int numVoices = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+    double audioSecs =
+      Double.parseDouble(System.getProperty("bench.audio", "10"));
+    int numCores = Runtime.getRuntime().availableProcessors();
+    String groupList = System.getProperty("bench.groups");
+    if (groupList == null) {
+      groupList = "1";
+      for (int groups = 2; groups <= numCores; groups *= 2) {
+        groupList += "," + groups;
+      }
+    }
+
+    System.out.printf("%d voices, %.0fs of audio, %d cores%n",
+                      numVoices, audioSecs, numCores);
+    System.out.printf("%-7s %10s %12s %14s%n",
+                      "Groups", "RT factor", "RT voices", "voices/core");
+    for (String groups : groupList.split(",")) {
+      int numGroups = Integer.parseInt(groups.trim());
+      double rtFactor = measure(numGroups, numVoices, audioSecs);
+      int coresUsed = Math.min(numGroups, numCores);
+      System.out.printf("%-7d %10.2f %12.0f %14.0f%n",
+                        numGroups, rtFactor, numVoices * rtFactor,
+                        numVoices * rtFactor / coresUsed);
+    }
+    System.exit(0);
+  }
+
+  static double measure(int numGroups, int numVoices, double audioSecs)
+      throws Exception {
+    ParallelSynthSink sink = new ParallelSynthSink(numGroups, null);
+    for (int stringIdx = 0; stringIdx < NUM_STRINGS; stringIdx++) {
+      sink.changeInstrument(SynthEngine.channelForString(stringIdx),
+                            INSTRUMENT);
+    }
+    for (int voice = 0; voice < numVoices; voice++) {
+      int channel = SynthEngine.channelForString(voice % NUM_STRINGS);
+      sink.noteOn(channel, 40 + voice / NUM_STRINGS * 3 + voice % 7, 100);
+    }
+    int numBlocks =
+      (int)(audioSecs * ParallelSynthSink.SAMPLE_RATE
+            / ParallelSynthSink.BLOCK_FRAMES);
+    long checksum = 0;
+
+    // The first second warms up, the rest is timed.  Every channel's
+    // pitch wheel moves each block, as in a bend.
+    int warmupBlocks =
+      (int)(ParallelSynthSink.SAMPLE_RATE / ParallelSynthSink.BLOCK_FRAMES);
+    long start = 0;
+    for (int block = 0; block < warmupBlocks + numBlocks; block++) {
+      if (block == warmupBlocks) {
+        start = System.nanoTime();
+      }
+      int bend = SynthEngine.PITCH_WHEEL_CENTER + (block % 64) * 32;
+      for (int stringIdx = 0; stringIdx < NUM_STRINGS; stringIdx++) {
+        sink.changePitchWheel(SynthEngine.channelForString(stringIdx),
+                              bend & 0x7F, bend >> 7);
+      }
+      checksum += sink.renderBlock()[block % 64];
+    }
+    double elapsedSecs = (System.nanoTime() - start) / 1e9;
+    sink.close();
+    if (checksum == Long.MIN_VALUE) {
+      System.out.println(checksum);
+    }
+    return numBlocks * ParallelSynthSink.BLOCK_FRAMES
+      / ParallelSynthSink.SAMPLE_RATE / elapsedSecs;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * FretboardSoak.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import projavafx.zenguitar3d.bench.StubReceiver;
+
+/**
+ * Soak test for switching fretboard layouts: alternates between the
+ * 10-string and 4-string layouts and reports heap use, string count
+ * and MIDI traffic as it goes, all of which should stay flat.
+ *
+ *   java -cp out:lib/JFugue5.jar projavafx.zenguitar3d.ui.FretboardSoak [switches]
+ */
+public class FretboardSoak {
+  public static void main(String[] args) {
+    int numSwitches = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int reportEvery = Math.max(numSwitches / 10, 1);
+
+    StubReceiver receiver = new StubReceiver();
+    ZenGuitar3D zenGuitar3D = HeadlessGuitar.create(receiver);
+
+    Runtime runtime = Runtime.getRuntime();
+    for (int idx = 1; idx <= numSwitches; idx++) {
+      zenGuitar3D.createFretboard(idx % 2 == 0 ? 25 : 47);
+      if (idx % reportEvery == 0) {
+        System.gc();
+        System.out.printf(
+          "switches=%-8d heap=%6.2fMB strings=%d showing=%d "
+          + "layouts=%d midiMessages=%d%n",
+          idx, (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0,
+          zenGuitar3D._guitarStrings.size(),
+          zenGuitar3D._guitarStringsContainer.getChildren().size(),
+          zenGuitar3D._fretboardLayouts.size(), receiver.getNumMessages());
+      }
+    }
+    System.exit(0);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * GuitarString3DBench.fx - Part of a JavaFX 3D, and touch API, example that
+ *                          uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.scene.input.TouchEvent;
+import javafx.scene.input.TouchPoint;
+import projavafx.zenguitar3d.bench.MicroBench;
+import projavafx.zenguitar3d.bench.StubReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks for the per-touch work done by GuitarString3D, playing
+ * into a StubReceiver instead of a synthesizer.
+ */
+public class GuitarString3DBench {
+  static int[] TOUCH_COUNTS = {1, 2, 5, 10};
+
+  public static void addTo(MicroBench bench) {
+    ZenGuitar3D zenGuitar3D = HeadlessGuitar.create(new StubReceiver());
+    GuitarString3D guitarString = HeadlessGuitar.createString(zenGuitar3D);
+
+    double[] xs = new double[64];
+    for (int idx = 0; idx < xs.length; idx++) {
+      xs[idx] = ZenGuitar3D.STRING_WIDTH * idx / xs.length;
+    }
+    int[] counter = new int[1];
+
+    bench.add("GuitarString3D.computeNoteValue", () ->
+      guitarString.computeNoteValue(xs[counter[0]++ & 63]));
+
+    for (int numTouches : TOUCH_COUNTS) {
+      TouchEvent te = createTouchEvent(guitarString, TouchEvent.TOUCH_MOVED,
+                                       numTouches, 0);
+      bench.add("GuitarString3D.isHighestTouchOnString[" + numTouches + "]",
+                () -> guitarString.isHighestTouchOnString(te) ? 1 : 0);
+      bench.add("GuitarString3D.numTouchPointsOnString[" + numTouches + "]",
+                () -> guitarString.numTouchPointsOnString(te));
+    }
+
+    // Alternate between two frets so every move releases one note and
+    // plays another
+    TouchEvent[] moves = {
+      createTouchEvent(guitarString, TouchEvent.TOUCH_MOVED, 1, 0),
+      createTouchEvent(guitarString, TouchEvent.TOUCH_MOVED, 1, 300)
+    };
+    bench.add("GuitarString3D.handleTouchMoved[note change]", () -> {
+      guitarString.handleTouchMoved(moves[counter[0]++ & 1]);
+      return guitarString._noteValue;
+    });
+  }
+
+  /**
+   * Creates an event for the first of numTouches touch points spread
+   * along the string, the first one offset by offsetX.
+   */
+  static TouchEvent createTouchEvent(GuitarString3D target,
+                                     javafx.event.EventType<TouchEvent> type,
+                                     int numTouches, double offsetX) {
+    List<TouchPoint> touchPoints = new ArrayList<>();
+    for (int idx = 0; idx < numTouches; idx++) {
+      double x = ZenGuitar3D.STRING_WIDTH - 50 - idx * 100;
+      if (idx == 0) {
+        x -= offsetX;
+      }
+      touchPoints.add(new TouchPoint(idx + 1, TouchPoint.State.MOVED,
+                                     x, 50, x, 50, target, null));
+    }
+    return new TouchEvent(target, target, type, touchPoints.get(0),
+                          touchPoints, 1, false, false, false, false);
+  }
+}
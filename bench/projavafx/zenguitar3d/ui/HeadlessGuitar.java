@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * HeadlessGuitar.fx - Part of a JavaFX 3D, and touch API, example that
+ *                     uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.scene.Group;
+import javafx.scene.layout.VBox;
+import projavafx.zenguitar3d.audio.DirectMidiSink;
+import projavafx.zenguitar3d.audio.SynthEngine;
+import projavafx.zenguitar3d.bench.StubReceiver;
+
+/**
+ * Sets up a ZenGuitar3D for the benchmarks and checks, which run
+ * without a stage or a running toolkit.  Notes are played into a
+ * StubReceiver instead of a synthesizer, strings vibrate without a
+ * timer, and the fretboard is built into containers that aren't shown.
+ *
+ * It's in the ui package, rather than with the other bench helpers,
+ * because it sets fields of ZenGuitar3D and overrides StringVibrator
+ * methods that are package-private.
+ */
+public class HeadlessGuitar {
+  static ZenGuitar3D create(StubReceiver receiver) {
+    return setUp(new ZenGuitar3D(), receiver);
+  }
+
+  /**
+   * Sets up a ZenGuitar3D created by the caller, e.g. a subclass
+   * standing in for parts that need a running toolkit.
+   */
+  static <T extends ZenGuitar3D> T setUp(T zenGuitar3D,
+                                         StubReceiver receiver) {
+    zenGuitar3D._synthEngine =
+      new SynthEngine(new DirectMidiSink(receiver));
+    // Vibrate without a running toolkit to drive the timer
+    zenGuitar3D._stringVibrator = new StringVibrator() {
+      @Override
+      void startTimer() {
+      }
+    };
+    zenGuitar3D._guitarStringsContainer = new VBox();
+    zenGuitar3D._guitar = new Group();
+    return zenGuitar3D;
+  }
+
+  /**
+   * Creates a lone first string, tuned five octaves above LOW_NOTE, for
+   * benchmarking the touch handlers.
+   */
+  static GuitarString3D createString(ZenGuitar3D zenGuitar3D) {
+    return new GuitarString3D(
+      0, ZenGuitar3D.LOW_NOTE + 59, ZenGuitar3D.NUM_FRETS,
+      ZenGuitar3D.STRING_WIDTH, 100, zenGuitar3D);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * TouchAllocationCheck.fx - Part of a JavaFX 3D, and touch API, example that
+ *                           uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.event.EventType;
+import javafx.scene.input.TouchEvent;
+import javafx.scene.input.TouchPoint;
+import projavafx.zenguitar3d.bench.StubReceiver;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that pressing, moving and releasing touches on a string
+ * allocates nothing once warmed up.  Runs press, move (changing note),
+ * move and release cycles for one and for two touches, measures the
+ * bytes the thread allocated over them, and exits with status 1 if any
+ * cycle allocated or no notes were played.
+ *
+ *   java -cp out:lib/JFugue5.jar projavafx.zenguitar3d.ui.TouchAllocationCheck
+ */
+public class TouchAllocationCheck {
+  static int WARMUP_CYCLES = 200000;
+  static int MEASURED_CYCLES = 100000;
+
+  private static com.sun.management.ThreadMXBean _threadBean =
+    (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  public static void main(String[] args) {
+    StubReceiver receiver = new StubReceiver();
+    ZenGuitar3D zenGuitar3D = HeadlessGuitar.create(receiver);
+    GuitarString3D guitarString = HeadlessGuitar.createString(zenGuitar3D);
+
+    boolean allocated = false;
+    for (int numTouches = 1; numTouches <= 2; numTouches++) {
+      TouchEvent[] cycle = {
+        createTouchEvent(guitarString, TouchEvent.TOUCH_PRESSED,
+                         TouchPoint.State.PRESSED,
+                         numTouches, 0),
+        createTouchEvent(guitarString, TouchEvent.TOUCH_MOVED,
+                         TouchPoint.State.MOVED,
+                         numTouches, 300),
+        createTouchEvent(guitarString, TouchEvent.TOUCH_MOVED,
+                         TouchPoint.State.MOVED,
+                         numTouches, 300),
+        createTouchEvent(guitarString, TouchEvent.TOUCH_RELEASED,
+                         TouchPoint.State.RELEASED,
+                         numTouches, 300)
+      };
+      runCycles(guitarString, cycle, WARMUP_CYCLES);
+
+      long threadId = Thread.currentThread().getId();
+      long bytesBefore = _threadBean.getThreadAllocatedBytes(threadId);
+      runCycles(guitarString, cycle, MEASURED_CYCLES);
+      long bytes = _threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+      // Measuring itself allocates nothing, which the empty run checks
+      bytesBefore = _threadBean.getThreadAllocatedBytes(threadId);
+      long overhead = _threadBean.getThreadAllocatedBytes(threadId)
+                      - bytesBefore;
+      bytes -= overhead;
+
+      System.out.printf("%d touch%s: %d bytes over %d cycles%n",
+                        numTouches, numTouches == 1 ? "" : "es", bytes,
+                        MEASURED_CYCLES);
+      allocated |= bytes > 0;
+    }
+    // Make sure the cycles played notes, rather than being ignored
+    if (receiver.getNumMessages() == 0) {
+      System.out.println("FAILED: no MIDI was sent");
+      System.exit(1);
+    }
+    if (allocated) {
+      System.out.println("FAILED: the touch path allocates");
+      System.exit(1);
+    }
+    System.out.println("OK: the touch path allocates nothing");
+  }
+
+  static void runCycles(GuitarString3D guitarString, TouchEvent[] cycle,
+                        int numCycles) {
+    for (int idx = 0; idx < numCycles; idx++) {
+      guitarString.handleTouchPressed(cycle[0]);
+      guitarString.handleTouchMoved(cycle[1]);
+      guitarString.handleTouchMoved(cycle[2]);
+      guitarString.handleTouchReleased(cycle[3]);
+    }
+  }
+
+  /**
+   * Creates an event for the first of numTouches touch points spread
+   * along the string, the first one offset by offsetX and in state,
+   * the rest stationary.
+   */
+  static TouchEvent createTouchEvent(GuitarString3D target,
+                                     EventType<TouchEvent> type,
+                                     TouchPoint.State state,
+                                     int numTouches, double offsetX) {
+    List<TouchPoint> touchPoints = new ArrayList<>();
+    for (int idx = 0; idx < numTouches; idx++) {
+      double x = ZenGuitar3D.STRING_WIDTH - 50 - idx * 100;
+      TouchPoint.State touchState = TouchPoint.State.STATIONARY;
+      if (idx == 0) {
+        x -= offsetX;
+        touchState = state;
+      }
+      touchPoints.add(new TouchPoint(idx + 1, touchState,
+                                     x, 50, x, 50, target, null));
+    }
+    return new TouchEvent(target, target, type, touchPoints.get(0),
+                          touchPoints, 1, false, false, false, false);
+  }
+}
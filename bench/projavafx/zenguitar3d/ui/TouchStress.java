@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * TouchStress.fx - Part of a JavaFX 3D, and touch API, example that
+ *                  uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.event.Event;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.PickResult;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.input.TouchEvent;
+import javafx.scene.input.TouchPoint;
+import javafx.scene.shape.Cylinder;
+import javafx.util.Duration;
+import projavafx.zenguitar3d.audio.DirectMidiSink;
+import projavafx.zenguitar3d.audio.SynthEngine;
+import projavafx.zenguitar3d.bench.StubReceiver;
+import projavafx.zenguitar3d.model.Inst2MidiLookup;
+import projavafx.zenguitar3d.perf.LatencyHistogram;
+import projavafx.zenguitar3d.perf.TouchReplayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless load generator for the touch handlers.  Synthesizes gesture
+ * streams and fires them at the GuitarString3D and CylinderPicker
+ * handlers, playing into a StubReceiver, then reports for each gesture
+ * the events per second sustained, the per-event latency distribution,
+ * the MIDI messages produced and the number of times the picker was
+ * asked to show.
+ *
+ * Gestures:
+ *   strum   each string tapped in turn
+ *   trill   one finger held while a second one taps above it
+ *   bend    a held note pushed across the string and back
+ *   chord   ten fingers pressed at once, one per string, and released
+ *   spin    the picker scrolled through several faces and released,
+ *           which switches instrument.  The picker's settle delay needs
+ *           a running toolkit, so here it picks on release
+ *
+ * System properties:
+ *   stress.rate=n      events per second to offer, 0 (the default) for
+ *                      as fast as they can be handled.  When offered
+ *                      faster than they are handled, latency (measured
+ *                      from when each event was due) grows without bound
+ *   stress.time=ms     run time per gesture, default 3000
+ *
+ *   java -cp out:lib/JFugue5.jar projavafx.zenguitar3d.ui.TouchStress [gesture...]
+ */
+public class TouchStress {
+  static String[] GESTURES = {"strum", "trill", "bend", "chord", "spin"};
+
+  private static double RATE =
+    Double.parseDouble(System.getProperty("stress.rate", "0"));
+  private static long RUN_MILLIS = Long.getLong("stress.time", 3000);
+
+  ZenGuitar3D _zenGuitar3D;
+  StubReceiver _receiver = new StubReceiver();
+  LatencyHistogram _latencies = new LatencyHistogram("latency");
+  int _numPickerShows;
+
+  // Step within the gesture, and the next touch point id
+  long _step;
+  int _nextTouchId = 1;
+
+  // Time the event set being fired was due
+  long _dueTime;
+
+  public static void main(String[] args) {
+    String[] gestures = args.length > 0 ? args : GESTURES;
+    TouchStress stress = new TouchStress();
+    System.out.printf("%-8s %9s %10s %9s %9s %9s %9s %8s %10s %7s%n",
+                      "Gesture", "events", "events/s", "p50 us", "p99 us",
+                      "p99.9 us", "max us", "MIDI", "MIDI/event",
+                      "pickers");
+    for (String gesture : gestures) {
+      stress.run(gesture);
+    }
+    System.exit(0);
+  }
+
+  TouchStress() {
+    _zenGuitar3D = HeadlessGuitar.setUp(new ZenGuitar3D() {
+      // Five touches show the picker, which needs a running toolkit
+      @Override
+      void showMidiPicker(boolean hideAfterShow) {
+        _numPickerShows++;
+      }
+    }, _receiver);
+    // Blank artwork, as label faces are drawn with a running toolkit
+    _zenGuitar3D._midiPickerImage = new WritableImage(2200, 110);
+    _zenGuitar3D.createMidiPicker();
+    _zenGuitar3D._midiPicker.setSettleDelay(Duration.ZERO);
+  }
+
+  void run(String gesture) {
+    // Each gesture starts on the 10 string fretboard, bending allowed
+    _zenGuitar3D.createFretboard(
+      Inst2MidiLookup.getMidiByPickerIdx(ZenGuitar3D.INITIAL_INST_PICKER_FACE));
+    _zenGuitar3D.setStringsToBend(true);
+    _zenGuitar3D.setMuteMode(false);
+    _step = 0;
+
+    // Untimed warm up, then the measured run
+    for (int pass = 0; pass < 2; pass++) {
+      long runNanos = RUN_MILLIS * 1000000 / (pass == 0 ? 3 : 1);
+      _latencies.reset();
+      long midiBefore = _receiver.getNumMessages();
+      int pickerShowsBefore = _numPickerShows;
+      long numEvents = 0;
+      long start = System.nanoTime();
+      long now = start;
+      while (now - start < runNanos) {
+        if (RATE > 0) {
+          _dueTime = start + (long)(numEvents * 1e9 / RATE);
+          while ((now = System.nanoTime()) < _dueTime) {
+            // Spin, as sleeping can't be timed finely enough
+          }
+        }
+        else {
+          _dueTime = now;
+        }
+        numEvents += fireStep(gesture);
+        now = System.nanoTime();
+      }
+      if (pass == 1) {
+        long midi = _receiver.getNumMessages() - midiBefore;
+        System.out.printf(
+          "%-8s %9d %10.0f %9.1f %9.1f %9.1f %9.1f %8d %10.2f %7d%n",
+          gesture, numEvents, numEvents * 1e9 / (now - start),
+          _latencies.getPercentileNanos(50) / 1000.0,
+          _latencies.getPercentileNanos(99) / 1000.0,
+          _latencies.getPercentileNanos(99.9) / 1000.0,
+          _latencies.getMaxNanos() / 1000.0, midi,
+          (double)midi / numEvents, _numPickerShows - pickerShowsBefore);
+      }
+    }
+  }
+
+  /**
+   * Fires the next event set of a gesture, returning the number of
+   * events fired.
+   */
+  int fireStep(String gesture) {
+    int numStrings = ZenGuitar3D._numStrings;
+    double width = ZenGuitar3D.STRING_WIDTH;
+    double height = ZenGuitar3D._stringHeight;
+    long step = _step++;
+    List<TouchPoint> touchPoints = new ArrayList<>();
+    switch (gesture) {
+      case "strum": {
+        // Press then release each string in turn
+        int stringIdx = (int)(step / 2 % numStrings);
+        int touchId = step % 2 == 0 ? _nextTouchId++ : _nextTouchId - 1;
+        touchPoints.add(createTouchPoint(touchId,
+          step % 2 == 0 ? TouchPoint.State.PRESSED : TouchPoint.State.RELEASED,
+          stringIdx, width * 0.2, height / 2));
+        break;
+      }
+      case "trill": {
+        // Finger 1 holds a low fret, finger 2 taps a higher one
+        boolean first = step == 0;
+        touchPoints.add(createTouchPoint(1,
+          first ? TouchPoint.State.PRESSED : TouchPoint.State.STATIONARY,
+          0, width * 0.3, height / 2));
+        if (!first) {
+          touchPoints.add(createTouchPoint(2,
+            step % 2 == 1 ? TouchPoint.State.PRESSED
+                          : TouchPoint.State.RELEASED,
+            0, width * 0.4, height / 2));
+        }
+        break;
+      }
+      case "bend": {
+        // Press, then 64 moves out across the string and back
+        int phase = (int)(step % 66);
+        TouchPoint.State state = phase == 0 ? TouchPoint.State.PRESSED
+          : phase == 65 ? TouchPoint.State.RELEASED : TouchPoint.State.MOVED;
+        double offset = (phase <= 32 ? phase : 64 - phase) / 32.0;
+        touchPoints.add(createTouchPoint(1, state, 0, width * 0.5,
+                                         height / 2 + offset * height));
+        break;
+      }
+      case "chord": {
+        TouchPoint.State state = step % 2 == 0 ? TouchPoint.State.PRESSED
+                                               : TouchPoint.State.RELEASED;
+        for (int idx = 0; idx < 10; idx++) {
+          touchPoints.add(createTouchPoint(idx + 1, state, idx % numStrings,
+                                           width * (0.1 + idx * 0.05),
+                                           height / 2));
+        }
+        break;
+      }
+      case "spin":
+        return fireSpinStep(step);
+      default:
+        throw new IllegalArgumentException("Unknown gesture: " + gesture);
+    }
+    for (TouchPoint tp : touchPoints) {
+      Event.fireEvent(tp.getTarget(), new TouchEvent(
+        tp.getTarget(), tp.getTarget(),
+        TouchReplayer.getEventType(tp.getState()), tp, touchPoints,
+        (int)step + 1, false, false, false, false));
+      _latencies.record(System.nanoTime() - _dueTime);
+    }
+    return touchPoints.size();
+  }
+
+  // Scroll start, 5 scrolls moving a face each, then a touch release
+  // that picks the face and switches instrument
+  int fireSpinStep(long step) {
+    Cylinder cylinder = _zenGuitar3D._midiPicker.getCylinder();
+    int phase = (int)(step % 7);
+    if (phase == 6) {
+      TouchPoint tp = new TouchPoint(1, TouchPoint.State.RELEASED, 0, 0, 0,
+                                     0, cylinder, null);
+      List<TouchPoint> touchPoints = new ArrayList<>();
+      touchPoints.add(tp);
+      Event.fireEvent(cylinder, new TouchEvent(
+        cylinder, cylinder, TouchEvent.TOUCH_RELEASED, tp, touchPoints,
+        (int)step + 1, false, false, false, false));
+    }
+    else {
+      double totalDeltaX = phase * 7 * 18.0;
+      Event.fireEvent(cylinder, new ScrollEvent(
+        cylinder, cylinder,
+        phase == 0 ? ScrollEvent.SCROLL_STARTED : ScrollEvent.SCROLL,
+        0, 0, 0, 0, false, false, false, false, true, false,
+        7 * 18.0, 0, totalDeltaX, 0,
+        ScrollEvent.HorizontalTextScrollUnits.NONE, 0,
+        ScrollEvent.VerticalTextScrollUnits.NONE, 0, 1,
+        new PickResult(cylinder, 0, 0)));
+    }
+    _latencies.record(System.nanoTime() - _dueTime);
+    return 1;
+  }
+
+  TouchPoint createTouchPoint(int touchId, TouchPoint.State state,
+                              int stringIdx, double x, double y) {
+    GuitarString3D target = _zenGuitar3D._guitarStrings.get(stringIdx);
+    return new TouchPoint(touchId, state, x, y, x, y, target, null);
+  }
+}
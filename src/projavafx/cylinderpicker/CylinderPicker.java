@@ -34,6 +34,8 @@
 
 package projavafx.cylinderpicker;
 
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
 import javafx.animation.RotateTransition;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
@@ -43,58 +45,120 @@ import javafx.scene.shape.Cylinder;
 import javafx.scene.transform.Rotate;
 import javafx.util.Duration;
 
+/**
+ * A cylinder of faces that's scrolled round to pick one.  Built with a
+ * single image, the image wraps the cylinder with a face per slot.
+ * Built with a FaceTileProvider, there may be many more faces than
+ * slots: the faces scroll past the slots, and a FaceTileAtlas draws only
+ * those near the front.
+ *
+ * Turning to a face only previews it, through the ItemBrowse callback.
+ * The ItemPick callback is called once the picker has come to rest on a
+ * new face for the settle delay, so scrolling or double clicking through
+ * several faces picks just the last.  ItemSettle is called whenever it
+ * comes to rest, whether or not the face changed.
+ */
 public class CylinderPicker extends Group {
   double _width;
   double _height;
   int _numFaces;
+  int _numSlots;
   double _faceWidth;
   double _faceAngle;
 
   Cylinder _cylinder;
+  FaceTileAtlas _atlas;
   private double _curRotateAngle = 0.0;
   private int _curFace = 0;
 
+  // Face under the current rotation while scrolling
+  private int _browsedFace = -1;
+
   RotateTransition _rotCylTrans;
 
+  // Runs while the picker is at rest on a face, before it's picked
+  PauseTransition _settle = new PauseTransition(new Duration(300));
+  private int _pickedFace;
+  private long _numFaceChanges;
+  private long _numPicks;
+
   ItemPick _itemCallback;
+  ItemBrowse _browseCallback;
+  ItemSettle _settleCallback;
   DismissRequest _dismissCallback;
 
   public CylinderPicker(double width, double height,
                         int numFaces, int initialFace,
                         Image diffuseMap) {
+    this(width, height, numFaces, numFaces, initialFace);
+
+    PhongMaterial mat = new PhongMaterial();
+    mat.setDiffuseMap(diffuseMap);
+    _cylinder.setMaterial(mat);
+  }
+
+  /**
+   * Creates a picker for every face of tiles, numSlots of which fit
+   * around the cylinder.  Tiles are drawn at the size a slot takes up.
+   */
+  public CylinderPicker(double width, double height,
+                        int numSlots, int initialFace,
+                        FaceTileProvider tiles) {
+    this(width, height, tiles.getNumFaces(),
+         Math.min(numSlots, tiles.getNumFaces()), initialFace);
+
+    int tileWidth =
+      (int)Math.ceil(2 * Math.PI * _cylinder.getRadius() / _numSlots);
+    int tileHeight = (int)Math.ceil(_cylinder.getHeight());
+    _atlas = new FaceTileAtlas(tiles, _numSlots, tileWidth, tileHeight);
+    _atlas.showAround(0);
+    _cylinder.rotateProperty().addListener(observable ->
+      _atlas.showAround(getPositionForAngle(_cylinder.getRotate())));
+
+    PhongMaterial mat = new PhongMaterial();
+    mat.setDiffuseMap(_atlas.getImage());
+    _cylinder.setMaterial(mat);
+  }
+
+  private CylinderPicker(double width, double height,
+                         int numFaces, int numSlots, int initialFace) {
     _width = width;
     _height = height;
     _curFace = initialFace;
+    _pickedFace = initialFace;
     _numFaces = numFaces;
-    _faceAngle = 360.0 / _numFaces;
-
-    PhongMaterial mat = new PhongMaterial();
-    mat.setDiffuseMap(diffuseMap);
+    _numSlots = numSlots;
+    _faceAngle = 360.0 / _numSlots;
 
     double radius = _width / 2;
-    _faceWidth = 2 * radius * Math.sin(360 / (_numFaces * 2));
+    _faceWidth = 2 * radius * Math.sin(360 / (_numSlots * 2));
     _cylinder = new Cylinder (_width, _faceWidth);
-    _cylinder.setMaterial(mat);
 
     _rotCylTrans =
       new RotateTransition(new Duration(1000), _cylinder);
+    _rotCylTrans.setOnFinished(e -> settle());
+    _settle.setOnFinished(e -> pickCurFace());
 
     _cylinder.setRotationAxis(Rotate.Y_AXIS);
 
+    // The angle isn't wrapped to 360 degrees, as the faces may not
+    // repeat every turn
     _cylinder.setOnScrollStarted(e -> {
-      _curRotateAngle = (_cylinder.getRotate() + 3600) % 360;
+      _rotCylTrans.stop();
+      _settle.stop();
+      _curRotateAngle = _cylinder.getRotate();
     });
 
     _cylinder.setOnScroll(e -> {
       if (!e.isInertia()) {
         _cylinder.setRotate(_curRotateAngle - e.getTotalDeltaX()
                             / 7);
+        browseFace(getFaceForAngle(_cylinder.getRotate()));
       }
     });
 
     _cylinder.setOnTouchReleased(te -> {
-      int facePicked = getFaceForAngle((_cylinder.getRotate() + 3600)
-                                        % 360);
+      int facePicked = getFaceForAngle(_cylinder.getRotate());
       rotateToFace(facePicked, false);
     });
 
@@ -108,8 +172,7 @@ public class CylinderPicker extends Group {
       if (me.getClickCount() == 2) {
         Point3D pickedPoint =
           me.getPickResult().getIntersectedPoint();
-        int facePicked = getFaceForPoint3D(pickedPoint);
-        rotateToFace(facePicked, true);
+        rotateToPosition(getPositionForPoint3D(pickedPoint), true);
       }
     });
 
@@ -120,40 +183,158 @@ public class CylinderPicker extends Group {
   }
 
   int getFaceForPoint3D(Point3D p3d) {
+    return Math.floorMod(getPositionForPoint3D(p3d), _numFaces);
+  }
+
+  // The position nearest the front showing the slot at p3d, a point
+  // on the cylinder in its own coordinates
+  int getPositionForPoint3D(Point3D p3d) {
      double theta = Math.toDegrees(Math.atan2(p3d.getX(), p3d.getZ()));
      theta = (theta + 360) % 360;
-     return getFaceForAngle(180 - theta);
+     int slot = Math.floorMod(getPositionForAngle(180 - theta), _numSlots);
+     return getNearestPosition(slot, _numSlots);
   }
 
   int getFaceForAngle(double angle) {
-    double dFace = (angle + 3600) % 360 / _faceAngle;
-    int face = (int)Math.floor(dFace);
-    return face;
+    return Math.floorMod(getPositionForAngle(angle), _numFaces);
+  }
+
+  // Positions count slots from angle 0 without wrapping, so the face
+  // at a position is the position modulo the number of faces
+  int getPositionForAngle(double angle) {
+    return (int)Math.floor(angle / _faceAngle);
+  }
+
+  // The position nearest the front that's congruent to residue
+  private int getNearestPosition(int residue, int period) {
+    int front = getPositionForAngle(_cylinder.getRotate());
+    int below = front - Math.floorMod(front - residue, period);
+    return front - below <= below + period - front ? below : below + period;
   }
 
   public void rotateToFace(int face, boolean useTransition) {
-    if (face != _curFace && _itemCallback != null) {
-      _itemCallback.itemPicked(face);
+    rotateToPosition(getNearestPosition(face, _numFaces), useTransition);
+  }
+
+  void rotateToPosition(int position, boolean useTransition) {
+    int face = Math.floorMod(position, _numFaces);
+    if (face != _curFace) {
+      _numFaceChanges++;
     }
-    double toAngle = (face + 0.5) * _faceAngle;
+    _settle.stop();
+    browseFace(face);
+    _curFace = face;
+    double toAngle = (position + 0.5) * _faceAngle;
     if (useTransition) {
       _rotCylTrans.setToAngle(toAngle);
       _rotCylTrans.playFromStart();
     }
     else {
       _cylinder.setRotate(toAngle);
+      settle();
     }
-    _curFace = face;
+  }
+
+  // Picks the current face after the settle delay, unless the picker
+  // moves again first
+  void settle() {
+    if (_settle.getDuration().greaterThan(Duration.ZERO)) {
+      _settle.playFromStart();
+    }
+    else {
+      pickCurFace();
+    }
+  }
+
+  void pickCurFace() {
+    if (_settleCallback != null) {
+      _settleCallback.itemSettled(_curFace);
+    }
+    if (_curFace != _pickedFace) {
+      _pickedFace = _curFace;
+      _numPicks++;
+      if (_itemCallback != null) {
+        _itemCallback.itemPicked(_curFace);
+      }
+    }
+  }
+
+  public boolean isRotating() {
+    return _rotCylTrans.getStatus() == Animation.Status.RUNNING;
+  }
+
+  void browseFace(int face) {
+    if (face != _browsedFace) {
+      _browsedFace = face;
+      if (_browseCallback != null) {
+        _browseCallback.itemBrowsed(face);
+      }
+    }
+  }
+
+  public int getNumFaces() {
+    return _numFaces;
   }
 
   public int getCurFace() {
     return _curFace;
   }
 
+  /**
+   * Sets how long the picker must rest on a face before it's picked,
+   * 300 ms by default.  With zero it's picked as soon as it's reached.
+   */
+  public void setSettleDelay(Duration settleDelay) {
+    _settle.setDuration(settleDelay);
+  }
+
+  /**
+   * Returns the number of times the picker was turned to a different
+   * face, each of which used to pick it.
+   */
+  public long getNumFaceChanges() {
+    return _numFaceChanges;
+  }
+
+  public long getNumPicks() {
+    return _numPicks;
+  }
+
+  /**
+   * Returns the face changes that were passed over, rather than picked,
+   * because the picker moved on before settling.
+   */
+  public long getNumPicksAvoided() {
+    return _numFaceChanges - _numPicks;
+  }
+
+  /**
+   * Returns the node that receives touches on the picker.
+   */
+  public Cylinder getCylinder() {
+    return _cylinder;
+  }
+
   public void setOnItemPicked(ItemPick itemCallback) {
     _itemCallback = itemCallback;
   }
 
+  /**
+   * Sets a callback for each face that comes under the current rotation
+   * while the picker is being scrolled, before any item is picked.
+   */
+  public void setOnItemBrowsed(ItemBrowse browseCallback) {
+    _browseCallback = browseCallback;
+  }
+
+  /**
+   * Sets a callback for each time the picker comes to rest after
+   * turning, before any item is picked.
+   */
+  public void setOnItemSettled(ItemSettle settleCallback) {
+    _settleCallback = settleCallback;
+  }
+
   public void setOnDismissRequested(DismissRequest dismissCallback) {
     _dismissCallback = dismissCallback;
   }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * FaceTileAtlas.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.cylinderpicker;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The texture wrapped around a CylinderPicker whose faces come from a
+ * FaceTileProvider.  The cylinder has a fixed number of slots, and as
+ * it rotates each slot near the front is given the face that's about to
+ * show there, so any number of faces scroll past the same few slots.
+ *
+ * Only faces within reach of the front are decoded, and their pixels
+ * are kept in a small LRU cache, so the memory used depends on the
+ * slots and the tile size, never on the number of faces.
+ */
+class FaceTileAtlas {
+  // Decoded tiles kept beyond those in reach of the front, so scrolling
+  // back and forth doesn't decode them again
+  static int CACHE_SLACK = 4;
+
+  private static int BLANK_ARGB = 0xFF202020;
+
+  private FaceTileProvider _tiles;
+  private int _numSlots;
+  private int _tileWidth;
+  private int _tileHeight;
+  private int _reach;
+  private WritableImage _image;
+
+  // Face shown in each slot, -1 if none yet
+  private int[] _slotFaces;
+  private Map<Integer, int[]> _cache;
+  private int[] _blankTile;
+
+  private long _numDecoded;
+  private long _numEvicted;
+  private long _numComposited;
+
+  FaceTileAtlas(FaceTileProvider tiles, int numSlots,
+                int tileWidth, int tileHeight) {
+    _tiles = tiles;
+    _numSlots = numSlots;
+    _tileWidth = tileWidth;
+    _tileHeight = tileHeight;
+
+    // Half of the cylinder faces the viewer, plus a slot either side
+    // so faces are ready before they turn into view
+    _reach = Math.min(numSlots / 4 + 1, (numSlots - 1) / 2);
+    _image = new WritableImage(numSlots * tileWidth, tileHeight);
+    _slotFaces = new int[numSlots];
+    Arrays.fill(_slotFaces, -1);
+    _blankTile = new int[tileWidth * tileHeight];
+    Arrays.fill(_blankTile, BLANK_ARGB);
+
+    int cacheSize = 2 * _reach + 1 + CACHE_SLACK;
+    _cache = new LinkedHashMap<Integer, int[]>(cacheSize * 2, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        if (size() > cacheSize) {
+          _numEvicted++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  Image getImage() {
+    return _image;
+  }
+
+  /**
+   * Makes sure the slots within reach of the front show the faces at
+   * the logical positions around front.  Positions wrap every numSlots
+   * around the cylinder, and faces wrap every getNumFaces().
+   */
+  void showAround(int frontPosition) {
+    int numFaces = _tiles.getNumFaces();
+    for (int dist = -_reach; dist <= _reach; dist++) {
+      int position = frontPosition + dist;
+      int slot = Math.floorMod(position, _numSlots);
+      int face = Math.floorMod(position, numFaces);
+      if (_slotFaces[slot] != face) {
+        _image.getPixelWriter().setPixels(
+          slot * _tileWidth, 0, _tileWidth, _tileHeight,
+          PixelFormat.getIntArgbInstance(), getTile(face), 0, _tileWidth);
+        _slotFaces[slot] = face;
+        _numComposited++;
+      }
+    }
+  }
+
+  int getFaceInSlot(int slot) {
+    return _slotFaces[slot];
+  }
+
+  int getNumCached() {
+    return _cache.size();
+  }
+
+  long getNumDecoded() {
+    return _numDecoded;
+  }
+
+  long getNumEvicted() {
+    return _numEvicted;
+  }
+
+  long getNumComposited() {
+    return _numComposited;
+  }
+
+  private int[] getTile(int face) {
+    int[] argb = _cache.get(face);
+    if (argb == null) {
+      Image tile = _tiles.loadTile(face, _tileWidth, _tileHeight);
+      if (tile == null || tile.isError() || tile.getPixelReader() == null) {
+        return _blankTile;
+      }
+      argb = resample(tile);
+      _cache.put(face, argb);
+      _numDecoded++;
+    }
+    return argb;
+  }
+
+  // Nearest neighbour, as tiles are normally asked for at the size
+  // they're shown
+  private int[] resample(Image tile) {
+    PixelReader reader = tile.getPixelReader();
+    int srcWidth = (int)tile.getWidth();
+    int srcHeight = (int)tile.getHeight();
+    int[] argb = new int[_tileWidth * _tileHeight];
+    if (srcWidth == _tileWidth && srcHeight == _tileHeight) {
+      reader.getPixels(0, 0, _tileWidth, _tileHeight,
+                       PixelFormat.getIntArgbInstance(), argb, 0, _tileWidth);
+      return argb;
+    }
+    for (int y = 0; y < _tileHeight; y++) {
+      int srcY = y * srcHeight / _tileHeight;
+      for (int x = 0; x < _tileWidth; x++) {
+        argb[y * _tileWidth + x] =
+          reader.getArgb(x * srcWidth / _tileWidth, srcY);
+      }
+    }
+    return argb;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * AudioOutput.fx - Part of a JavaFX 3D, and touch API, example that
+ *                  uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import projavafx.zenguitar3d.perf.LatencyTracer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes rendered blocks to a SourceDataLine, keeping only as much
+ * audio queued as the machine needs to play without dropouts.
+ *
+ * The line is opened with room for the largest allowed latency, but
+ * blocks are only written once the audio already queued has drained to
+ * the current target, so the target, not the line's buffer size, is the
+ * output latency.  It starts at the smallest target.  Whenever the
+ * queue is found empty before a write the line has underrun, and the
+ * target steps up a block.  Optionally, after playing for a while with
+ * no underruns it steps back down a block.
+ *
+ * System properties, in milliseconds unless noted:
+ *   zenguitar.audio.latency      starting (and smallest) latency, by
+ *                                default one block
+ *   zenguitar.audio.maxLatency   largest latency stepped up to, by
+ *                                default 100; the same as the starting
+ *                                latency fixes it
+ *   zenguitar.audio.stepDown     seconds without an underrun before
+ *                                stepping down, by default 0 (never)
+ */
+public class AudioOutput {
+  public static long MIN_LATENCY_MILLIS =
+    Long.getLong("zenguitar.audio.latency", 0);
+  public static long MAX_LATENCY_MILLIS =
+    Long.getLong("zenguitar.audio.maxLatency", 100);
+  public static long STEP_DOWN_NANOS =
+    Long.getLong("zenguitar.audio.stepDown", 0) * 1000000000L;
+
+  private SourceDataLine _line;
+  private AudioFormat _format;
+  private int _blockFrames;
+  private int _frameSize;
+  private int _minBlocks;
+  private int _maxBlocks;
+  private long _stepDownNanos;
+
+  // Written only by the thread calling write(), read by any
+  private volatile int _targetBlocks;
+  private volatile long _underrunCount;
+  private volatile long _stepUpCount;
+  private volatile long _stepDownCount;
+  private long _numWrites;
+  private long _stableSinceNanos;
+
+  /**
+   * Plays blocks of blockFrames frames through line, with the latency
+   * limits set by the system properties.
+   */
+  public AudioOutput(SourceDataLine line, AudioFormat format,
+                     int blockFrames) {
+    this(line, format, blockFrames, MIN_LATENCY_MILLIS * 1000000,
+         MAX_LATENCY_MILLIS * 1000000, STEP_DOWN_NANOS);
+  }
+
+  public AudioOutput(SourceDataLine line, AudioFormat format,
+                     int blockFrames, long minLatencyNanos,
+                     long maxLatencyNanos, long stepDownNanos) {
+    _line = line;
+    _format = format;
+    _blockFrames = blockFrames;
+    _frameSize = format.getFrameSize();
+    _minBlocks = Math.max(1, blocksFor(minLatencyNanos));
+    _maxBlocks = Math.max(_minBlocks, blocksFor(maxLatencyNanos));
+    _stepDownNanos = stepDownNanos;
+    _targetBlocks = _minBlocks;
+  }
+
+  /**
+   * Opens the line, if it isn't already, with room for the largest
+   * latency plus the block being written, and starts it.
+   */
+  public void open() throws LineUnavailableException {
+    if (!_line.isOpen()) {
+      _line.open(_format, (_maxBlocks + 1) * _blockFrames * _frameSize);
+    }
+    _line.start();
+    _stableSinceNanos = System.nanoTime();
+    LatencyTracer.setOutputLatencyNanos(getLatencyNanos());
+  }
+
+  /**
+   * Waits until the queued audio has drained to the target latency,
+   * then writes block, a whole number of frames.  Called from a single
+   * thread.
+   */
+  public void write(byte[] block) throws InterruptedException {
+    long targetFrames = (long)_targetBlocks * _blockFrames;
+    long queuedFrames = getQueuedFrames();
+    while (queuedFrames > targetFrames) {
+      LockSupport.parkNanos(nanosFor(queuedFrames - targetFrames));
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      queuedFrames = getQueuedFrames();
+    }
+
+    long now = System.nanoTime();
+    if (queuedFrames == 0 && _numWrites > 0) {
+      _underrunCount++;
+      _stableSinceNanos = now;
+      if (_targetBlocks < _maxBlocks) {
+        setTargetBlocks(_targetBlocks + 1);
+        _stepUpCount++;
+      }
+    }
+    else if (_stepDownNanos > 0 && _targetBlocks > _minBlocks &&
+             now - _stableSinceNanos >= _stepDownNanos) {
+      _stableSinceNanos = now;
+      setTargetBlocks(_targetBlocks - 1);
+      _stepDownCount++;
+    }
+    _line.write(block, 0, block.length);
+    _numWrites++;
+  }
+
+  public void close() {
+    _line.close();
+  }
+
+  /**
+   * Returns the time a block written now waits before it's heard,
+   * at the current target.
+   */
+  public long getLatencyNanos() {
+    return nanosFor((long)(_targetBlocks + 1) * _blockFrames);
+  }
+
+  public int getLatencyBlocks() {
+    return _targetBlocks;
+  }
+
+  public long getUnderrunCount() {
+    return _underrunCount;
+  }
+
+  public long getStepUpCount() {
+    return _stepUpCount;
+  }
+
+  public long getStepDownCount() {
+    return _stepDownCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "Audio output: latency=%.1fms (%d blocks, %d..%d), underruns=%d, " +
+      "steps up=%d down=%d",
+      getLatencyNanos() / 1e6, _targetBlocks, _minBlocks, _maxBlocks,
+      _underrunCount, _stepUpCount, _stepDownCount);
+  }
+
+  private long getQueuedFrames() {
+    return (_line.getBufferSize() - _line.available()) / _frameSize;
+  }
+
+  private void setTargetBlocks(int targetBlocks) {
+    _targetBlocks = targetBlocks;
+    LatencyTracer.setOutputLatencyNanos(getLatencyNanos());
+  }
+
+  private int blocksFor(long nanos) {
+    return (int)(nanos * _format.getFrameRate() / 1e9 / _blockFrames);
+  }
+
+  private long nanosFor(long frames) {
+    return (long)(frames * 1e9 / _format.getFrameRate());
+  }
+}
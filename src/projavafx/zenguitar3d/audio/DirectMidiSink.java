@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * DirectMidiSink.fx - Part of a JavaFX 3D, and touch API, example that
+ *                     uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+
+/**
+ * Sends channel messages straight to a Receiver using preallocated
+ * ShortMessages, so no pattern strings are built or parsed per note.
+ * The messages are reused, so calls must not overlap; SynthEngine
+ * serializes them.
+ */
+public class DirectMidiSink implements MidiSink {
+  private static int NOTE_OFF_VELOCITY = 64;
+
+  private Synthesizer _synth;
+  private Receiver _receiver;
+
+  private ShortMessage _noteOnMsg = new ShortMessage();
+  private ShortMessage _noteOffMsg = new ShortMessage();
+  private ShortMessage _pitchWheelMsg = new ShortMessage();
+  private ShortMessage _instMsg = new ShortMessage();
+
+  public DirectMidiSink(Synthesizer synth)
+      throws MidiUnavailableException {
+    this(openReceiver(synth));
+    _synth = synth;
+  }
+
+  public DirectMidiSink(Receiver receiver) {
+    _receiver = receiver;
+  }
+
+  private static Receiver openReceiver(Synthesizer synth)
+      throws MidiUnavailableException {
+    if (!synth.isOpen()) {
+      synth.open();
+    }
+    return synth.getReceiver();
+  }
+
+  /**
+   * Returns the synthesizer being played, or null if the sink was given
+   * a Receiver.
+   */
+  public Synthesizer getSynthesizer() {
+    return _synth;
+  }
+
+  @Override
+  public void noteOn(int channel, int noteValue, int velocity) {
+    send(_noteOnMsg, ShortMessage.NOTE_ON, channel, noteValue, velocity);
+  }
+
+  @Override
+  public void noteOff(int channel, int noteValue) {
+    send(_noteOffMsg, ShortMessage.NOTE_OFF, channel, noteValue,
+         NOTE_OFF_VELOCITY);
+  }
+
+  @Override
+  public void changePitchWheel(int channel, int lsb, int msb) {
+    send(_pitchWheelMsg, ShortMessage.PITCH_BEND, channel, lsb, msb);
+  }
+
+  @Override
+  public void changeInstrument(int channel, int instNum) {
+    send(_instMsg, ShortMessage.PROGRAM_CHANGE, channel, instNum, 0);
+  }
+
+  @Override
+  public void close() {
+    _receiver.close();
+    if (_synth != null) {
+      _synth.close();
+    }
+  }
+
+  private void send(ShortMessage msg, int command, int channel,
+                    int data1, int data2) {
+    try {
+      msg.setMessage(command, channel, data1 & 0x7F, data2 & 0x7F);
+      _receiver.send(msg, -1);
+    }
+    catch (InvalidMidiDataException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * InstrumentPrefetcher.fx - Part of a JavaFX 3D, and touch API, example that
+ *                           uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import javax.sound.midi.Instrument;
+import javax.sound.midi.Patch;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads instruments from an external soundbank into the synthesizer on
+ * a background thread before they're needed, so switching to them
+ * doesn't stall the first notes.  Loaded instruments are kept in a
+ * bounded LRU cache; the least recently requested one is unloaded when
+ * it overflows, except for instruments pinned by a channel that's
+ * playing them.  An unloaded program is given back the synthesizer's
+ * default instrument for it, which is always resident.
+ *
+ * Only the latest request is acted on, so spinning quickly through the
+ * picker doesn't queue up work for faces already passed.
+ *
+ * With several synthesizers, such as a ParallelSynthSink's groups, each
+ * instrument is loaded into and unloaded from all of them.
+ */
+public class InstrumentPrefetcher {
+  public static int CACHE_SIZE = 8;
+
+  private Synthesizer[] _synths;
+  private Soundbank _soundbank;
+  private IntConsumer _onLoaded;
+
+  // Loaded instruments by zero based program, least recently used first
+  private Map<Integer, Instrument> _loaded =
+    new LinkedHashMap<>(16, 0.75f, true);
+  // Zero based program pinned by each channel, or -1
+  private AtomicIntegerArray _pinned =
+    new AtomicIntegerArray(SynthEngine.NUM_CHANNELS);
+
+  private AtomicReference<int[]> _pending = new AtomicReference<>();
+  private ExecutorService _executor =
+    Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "Instrument prefetch");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+
+  /**
+   * Creates a prefetcher for instruments in soundbank.  onLoaded is
+   * called on the prefetch thread with each zero based instrument
+   * number once it has been loaded.
+   */
+  public InstrumentPrefetcher(Synthesizer synth, Soundbank soundbank,
+                              IntConsumer onLoaded) {
+    this(new Synthesizer[] {synth}, soundbank, onLoaded);
+  }
+
+  public InstrumentPrefetcher(Synthesizer[] synths, Soundbank soundbank,
+                              IntConsumer onLoaded) {
+    _synths = synths;
+    _soundbank = soundbank;
+    _onLoaded = onLoaded;
+    for (int channel = 0; channel < _pinned.length(); channel++) {
+      _pinned.set(channel, -1);
+    }
+  }
+
+  /**
+   * Requests that the given zero based instruments be loaded, most
+   * important first, replacing any request not yet started.
+   */
+  public void prefetch(int... instNums) {
+    if (_pending.getAndSet(instNums) == null) {
+      _executor.execute(() -> load(_pending.getAndSet(null)));
+    }
+  }
+
+  /**
+   * Keeps the zero based instrument a channel is playing from being
+   * unloaded, releasing the one it pinned before.
+   */
+  public void pin(int channel, int instNum) {
+    _pinned.set(channel, instNum);
+  }
+
+  private boolean isPinned(int instNum) {
+    for (int channel = 0; channel < _pinned.length(); channel++) {
+      if (_pinned.get(channel) == instNum) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized int getNumLoaded() {
+    return _loaded.size();
+  }
+
+  public void close() {
+    _executor.shutdownNow();
+  }
+
+  // Unloading removes the program altogether, so reload the default
+  private static void restoreDefault(Synthesizer synth, int instNum) {
+    Soundbank defaultSoundbank = synth.getDefaultSoundbank();
+    if (defaultSoundbank != null) {
+      Instrument instrument =
+        defaultSoundbank.getInstrument(new Patch(0, instNum));
+      if (instrument != null) {
+        synth.loadInstrument(instrument);
+      }
+    }
+  }
+
+  private boolean loadInstrument(Instrument instrument) {
+    boolean loaded = true;
+    for (Synthesizer synth : _synths) {
+      loaded &= synth.loadInstrument(instrument);
+    }
+    return loaded;
+  }
+
+  private synchronized void load(int[] instNums) {
+    // Load in reverse so the most important ends up most recently used
+    for (int idx = instNums.length - 1; idx >= 0; idx--) {
+      int instNum = instNums[idx];
+      if (_loaded.get(instNum) == null) {
+        Instrument instrument =
+          _soundbank.getInstrument(new Patch(0, instNum));
+        if (instrument != null && loadInstrument(instrument)) {
+          _loaded.put(instNum, instrument);
+          _onLoaded.accept(instNum);
+        }
+      }
+    }
+    Iterator<Map.Entry<Integer, Instrument>> eldest =
+      _loaded.entrySet().iterator();
+    while (_loaded.size() > CACHE_SIZE && eldest.hasNext()) {
+      Map.Entry<Integer, Instrument> entry = eldest.next();
+      if (!isPinned(entry.getKey())) {
+        for (Synthesizer synth : _synths) {
+          synth.unloadInstrument(entry.getValue());
+          restoreDefault(synth, entry.getKey());
+        }
+        eldest.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * JFugueMidiSink.fx - Part of a JavaFX 3D, and touch API, example that
+ *                     uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import org.jfugue.realtime.RealTimePlayer;
+import org.jfugue.theory.Note;
+
+import javax.sound.midi.MidiUnavailableException;
+
+/**
+ * Plays channel messages through a JFugue RealTimePlayer by building
+ * and playing a pattern for each note.  Kept as a fallback for the
+ * DirectMidiSink.
+ */
+public class JFugueMidiSink implements MidiSink {
+  private RealTimePlayer _player;
+
+  // Channel most recently selected on the player
+  private int _curChannel = -1;
+
+  public JFugueMidiSink() throws MidiUnavailableException {
+    _player = new RealTimePlayer();
+  }
+
+  @Override
+  public void noteOn(int channel, int noteValue, int velocity) {
+    selectChannel(channel);
+    Note note = new Note(noteValue);
+    note.setAttackVelocity((byte)velocity);
+    _player.play(note.getPattern() + "s-");
+  }
+
+  @Override
+  public void noteOff(int channel, int noteValue) {
+    selectChannel(channel);
+    _player.play(new Note(noteValue).getPattern() + "-s");
+  }
+
+  @Override
+  public void changePitchWheel(int channel, int lsb, int msb) {
+    selectChannel(channel);
+    _player.changePitchWheel((byte)lsb, (byte)msb);
+  }
+
+  @Override
+  public void changeInstrument(int channel, int instNum) {
+    selectChannel(channel);
+    _player.changeInstrument(instNum);
+  }
+
+  @Override
+  public void close() {
+    _player.close();
+  }
+
+  private void selectChannel(int channel) {
+    if (channel != _curChannel) {
+      _player.changeTrack(channel);
+      _curChannel = channel;
+    }
+  }
+}
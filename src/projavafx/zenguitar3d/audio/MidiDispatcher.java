@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * MidiDispatcher.fx - Part of a JavaFX 3D, and touch API, example that
+ *                     uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import projavafx.zenguitar3d.perf.LatencyTracer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A MidiSink that queues messages on a MidiEventRing and sends them to
+ * another MidiSink from a dedicated dispatch thread, so the thread
+ * producing them (normally the JavaFX Application Thread) never waits
+ * on the synthesizer, except to queue a note-off when the ring is full:
+ * a dropped note-off would leave its note sounding, so it waits for the
+ * dispatch thread to make room.  Other messages that don't fit are
+ * dropped and counted.
+ *
+ * The ring has a single producer, so only one thread may call the
+ * message methods at a time; callers on several threads must hold a
+ * common lock while doing so, as SynthEngine does.
+ *
+ * Pitch wheel changes are coalesced per channel by a PitchBendCoalescer
+ * rather than sent one for one.
+ */
+public class MidiDispatcher implements MidiSink {
+  public static int RING_CAPACITY = 1024;
+
+  private MidiSink _target;
+  private MidiEventRing _ring;
+  private PitchBendCoalescer _bends;
+  private Thread _thread;
+  private volatile boolean _running = true;
+  private volatile boolean _waiting;
+
+  // Counters written only by the dispatch thread
+  private volatile long _sentCount;
+  private volatile long _totalLatencyNanos;
+  private volatile long _maxLatencyNanos;
+  private volatile int _maxDepth;
+
+  // Written only by the producer
+  private volatile long _noteOffWaitCount;
+
+  public MidiDispatcher(MidiSink target) {
+    _target = target;
+    _ring = new MidiEventRing(RING_CAPACITY);
+    _bends = new PitchBendCoalescer(target, SynthEngine.NUM_CHANNELS);
+    _thread = new Thread(() -> dispatch(), "MIDI dispatch");
+    _thread.setDaemon(true);
+    _thread.setPriority(Thread.MAX_PRIORITY);
+    _thread.start();
+  }
+
+  @Override
+  public void noteOn(int channel, int noteValue, int velocity) {
+    noteOn(channel, noteValue, velocity, 0);
+  }
+
+  /**
+   * Queues a note-on caused by a touch received at touchTime, so its
+   * latency can be traced once it's sent.
+   */
+  public void noteOn(int channel, int noteValue, int velocity,
+                     long touchTime) {
+    enqueue(MidiEventRing.NOTE_ON, channel, noteValue, velocity, touchTime);
+  }
+
+  @Override
+  public void noteOff(int channel, int noteValue) {
+    if (!_ring.hasRoomFor(MidiEventRing.NOTE_OFF)) {
+      _noteOffWaitCount++;
+      while (!_ring.hasRoomFor(MidiEventRing.NOTE_OFF) && _running) {
+        LockSupport.unpark(_thread);
+        Thread.yield();
+      }
+    }
+    enqueue(MidiEventRing.NOTE_OFF, channel, noteValue, 0);
+  }
+
+  @Override
+  public void changePitchWheel(int channel, int lsb, int msb) {
+    enqueue(MidiEventRing.PITCH_WHEEL, channel, lsb, msb);
+  }
+
+  @Override
+  public void changeInstrument(int channel, int instNum) {
+    enqueue(MidiEventRing.INSTRUMENT, channel, instNum, 0);
+  }
+
+  /**
+   * Stops the dispatch thread after sending whatever is still queued,
+   * then closes the target sink.
+   */
+  @Override
+  public void close() {
+    _running = false;
+    LockSupport.unpark(_thread);
+    try {
+      _thread.join(1000);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    _target.close();
+  }
+
+  private void enqueue(int kind, int channel, int data1, int data2) {
+    enqueue(kind, channel, data1, data2, 0);
+  }
+
+  private void enqueue(int kind, int channel, int data1, int data2,
+                       long touchTime) {
+    if (_ring.offer(kind, channel, data1, data2, System.nanoTime(),
+                    touchTime)
+        && _waiting) {
+      LockSupport.unpark(_thread);
+    }
+  }
+
+  private void dispatch() {
+    while (_running || !_ring.isEmpty()) {
+      long bendWait = _bends.isPending() ? _bends.step(System.nanoTime()) : -1;
+      int depth = _ring.size();
+      if (depth > _maxDepth) {
+        _maxDepth = depth;
+      }
+      int event = _ring.poll();
+      if (event < 0) {
+        _waiting = true;
+        if (_running && _ring.isEmpty()) {
+          if (bendWait < 0) {
+            LockSupport.park(this);
+          }
+          else {
+            LockSupport.parkNanos(this, bendWait);
+          }
+        }
+        _waiting = false;
+        continue;
+      }
+      send(event);
+      long latency = System.nanoTime() - _ring.getPolledTime();
+      _totalLatencyNanos += latency;
+      if (latency > _maxLatencyNanos) {
+        _maxLatencyNanos = latency;
+      }
+      _sentCount++;
+    }
+  }
+
+  private void send(int event) {
+    int channel = MidiEventRing.channel(event);
+    int data1 = MidiEventRing.data1(event);
+    int data2 = MidiEventRing.data2(event);
+    int kind = MidiEventRing.kind(event);
+    if (kind == MidiEventRing.NOTE_ON) {
+      _bends.flush(channel, _ring.getPolledTime());
+      _target.noteOn(channel, data1, data2);
+      LatencyTracer.recordSent(_ring.getPolledTouchTime());
+    }
+    else if (kind == MidiEventRing.NOTE_OFF) {
+      _bends.flush(channel, _ring.getPolledTime());
+      _target.noteOff(channel, data1);
+    }
+    else if (kind == MidiEventRing.PITCH_WHEEL) {
+      _bends.setTarget(channel, data2 << 7 | data1);
+    }
+    else if (kind == MidiEventRing.INSTRUMENT) {
+      _target.changeInstrument(channel, data1);
+    }
+  }
+
+  public int getQueueDepth() {
+    return _ring.size();
+  }
+
+  public int getMaxQueueDepth() {
+    return _maxDepth;
+  }
+
+  public long getDroppedCount() {
+    return _ring.getDroppedCount();
+  }
+
+  /**
+   * Returns how many note-offs had to wait for room in the ring.
+   */
+  public long getNoteOffWaitCount() {
+    return _noteOffWaitCount;
+  }
+
+  public long getSentCount() {
+    return _sentCount;
+  }
+
+  public long getMeanLatencyNanos() {
+    long sent = _sentCount;
+    return sent == 0 ? 0 : _totalLatencyNanos / sent;
+  }
+
+  public long getMaxLatencyNanos() {
+    return _maxLatencyNanos;
+  }
+
+  /**
+   * Returns the number of pitch wheel changes queued, of which
+   * getSentBendCount() were sent after coalescing.
+   */
+  public long getReceivedBendCount() {
+    return _bends.getReceivedCount();
+  }
+
+  public long getSentBendCount() {
+    return _bends.getSentCount();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "MIDI dispatch: sent=%d dropped=%d noteOffWaits=%d depth=%d "
+      + "maxDepth=%d meanLatency=%.1fus maxLatency=%.1fus bends=%d/%d",
+      getSentCount(), getDroppedCount(), getNoteOffWaitCount(),
+      getQueueDepth(), getMaxQueueDepth(), getMeanLatencyNanos() / 1000.0,
+      getMaxLatencyNanos() / 1000.0, getSentBendCount(),
+      getReceivedBendCount());
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * MidiEventRing.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free ring of MIDI channel events with a single producer
+ * and a single consumer.  Each event is packed into an int and stored
+ * with its enqueue time in preallocated arrays, so offering and polling
+ * never allocate.
+ *
+ * When the ring is full the producer never waits.  Note-ons and pitch
+ * wheel changes are rejected once the ring is within RESERVED_SLOTS of
+ * capacity, leaving the reserved slots for note-offs and instrument
+ * changes so that sounding notes can still be stopped.  An event that
+ * can't be stored is dropped and counted, unless the producer checks
+ * hasRoomFor() first and waits, as MidiDispatcher does for note-offs.
+ */
+public class MidiEventRing {
+  public static int NOTE_ON = 1;
+  public static int NOTE_OFF = 2;
+  public static int PITCH_WHEEL = 3;
+  public static int INSTRUMENT = 4;
+
+  public static int RESERVED_SLOTS = 16;
+
+  private int[] _events;
+  private long[] _times;
+  private long[] _touchTimes;
+  private int _capacity;
+  private int _mask;
+
+  // Next slot to read, only advanced by the consumer
+  private AtomicLong _head = new AtomicLong();
+
+  // Next slot to write, only advanced by the producer
+  private AtomicLong _tail = new AtomicLong();
+
+  private volatile long _droppedCount;
+
+  // Times for the event most recently polled
+  private long _polledTime;
+  private long _polledTouchTime;
+
+  /**
+   * Creates a ring holding at least minCapacity events, rounded up to a
+   * power of two.
+   */
+  public MidiEventRing(int minCapacity) {
+    _capacity = Integer.highestOneBit(
+      Math.max(minCapacity, RESERVED_SLOTS * 2) - 1) << 1;
+    _mask = _capacity - 1;
+    _events = new int[_capacity];
+    _times = new long[_capacity];
+    _touchTimes = new long[_capacity];
+  }
+
+  /**
+   * Called only from the producer thread.  Returns false if the event
+   * was dropped because the ring is full.
+   */
+  public boolean offer(int kind, int channel, int data1, int data2,
+                       long time) {
+    return offer(kind, channel, data1, data2, time, 0);
+  }
+
+  /**
+   * Offers an event along with the time of the touch that caused it,
+   * for latency tracing.
+   */
+  public boolean offer(int kind, int channel, int data1, int data2,
+                       long time, long touchTime) {
+    long tail = _tail.get();
+    if (tail - _head.get() >= limitFor(kind)) {
+      _droppedCount++;
+      return false;
+    }
+    int idx = (int)tail & _mask;
+    _events[idx] = kind << 24 | (channel & 0xFF) << 16
+                   | (data1 & 0xFF) << 8 | (data2 & 0xFF);
+    _times[idx] = time;
+    _touchTimes[idx] = touchTime;
+    // A full volatile write, so a consumer about to park sees the event
+    _tail.set(tail + 1);
+    return true;
+  }
+
+  /**
+   * Called only from the producer thread.  Returns true if an event of
+   * the given kind would be stored rather than dropped.  Only the
+   * consumer frees slots, so the answer stays true until it's offered.
+   */
+  public boolean hasRoomFor(int kind) {
+    return _tail.get() - _head.get() < limitFor(kind);
+  }
+
+  private long limitFor(int kind) {
+    if (kind == NOTE_ON || kind == PITCH_WHEEL) {
+      return _capacity - RESERVED_SLOTS;
+    }
+    return _capacity;
+  }
+
+  /**
+   * Called only from the consumer thread.  Returns the next packed
+   * event, or -1 if the ring is empty.
+   */
+  public int poll() {
+    long head = _head.get();
+    if (head == _tail.get()) {
+      return -1;
+    }
+    int idx = (int)head & _mask;
+    int event = _events[idx];
+    _polledTime = _times[idx];
+    _polledTouchTime = _touchTimes[idx];
+    _head.lazySet(head + 1);
+    return event;
+  }
+
+  /**
+   * Enqueue time of the event most recently returned by poll().
+   */
+  public long getPolledTime() {
+    return _polledTime;
+  }
+
+  /**
+   * Touch time of the event most recently returned by poll(), or 0 if
+   * it wasn't traced.
+   */
+  public long getPolledTouchTime() {
+    return _polledTouchTime;
+  }
+
+  public static int kind(int event) {
+    return event >>> 24;
+  }
+
+  public static int channel(int event) {
+    return (event >>> 16) & 0xFF;
+  }
+
+  public static int data1(int event) {
+    return (event >>> 8) & 0xFF;
+  }
+
+  public static int data2(int event) {
+    return event & 0xFF;
+  }
+
+  public boolean isEmpty() {
+    return _head.get() == _tail.get();
+  }
+
+  public int size() {
+    return (int)(_tail.get() - _head.get());
+  }
+
+  public int getCapacity() {
+    return _capacity;
+  }
+
+  public long getDroppedCount() {
+    return _droppedCount;
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * MidiFileRecorder.fx - Part of a JavaFX 3D, and touch API, example that
+ *                       uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A MidiSink that passes messages on to another sink and records them
+ * as a Type 1 standard MIDI file, with a conductor track and one track
+ * per string.  Memory use stays constant however long the session.
+ *
+ * While playing, each message is appended to a spool file next to the
+ * output (name.mid.part), through a preallocated buffer that's handed
+ * to a writer thread when it fills, so the thread sending messages
+ * never waits on the disk.  When no buffer has been handed over for a
+ * second, the writer takes the partly filled one itself, so a pause in
+ * playing doesn't leave the last notes only in memory.  Buffers come
+ * from a small fixed pool; if the writer falls behind, the timed
+ * hand-off is skipped, and only a full buffer waits for a free one.
+ *
+ * The spool is itself a Type 0 MIDI file whose track length is patched
+ * after each write, so after a crash it holds a playable recording up
+ * to the last write.  On close the spool is split into per-string
+ * tracks, each written in one pass with its length patched at the end,
+ * and then deleted.  A spool left by a crash can be exported with:
+ *
+ *   java projavafx.zenguitar3d.audio.MidiFileRecorder name.mid.part name.mid
+ *
+ * Times are ticks at 480 per quarter note, 120 bpm, so about 1 ms each.
+ */
+public class MidiFileRecorder implements MidiSink {
+  public static int TICKS_PER_QUARTER = 480;
+  public static int MICROS_PER_QUARTER = 500000;
+
+  static int BUFFER_SIZE = 64 * 1024;
+  static int NUM_BUFFERS = 4;
+  static long FLUSH_INTERVAL_NANOS = 1000000000L;
+
+  private static int NOTE_OFF_VELOCITY = 64;
+
+  // Longest event: a 4 byte delta time and a 3 byte message
+  private static int MAX_EVENT_SIZE = 7;
+
+  // Size of the header chunk, and of a track chunk's type and length
+  private static int HEADER_SIZE = 14;
+  private static int TRACK_HEADER_SIZE = 8;
+
+  private MidiSink _target;
+  private Path _path;
+  private Path _spoolPath;
+  private FileChannel _spool;
+  private ByteBuffer _buffer;
+  private long _startNanos;
+  private long _lastTick;
+
+  // Buffers cycle from the sending thread through _full to the writer
+  // thread, and back through _free.  _buffer is guarded by _bufferLock,
+  // which the writer only tries for, so it never waits on the sender.
+  private ReentrantLock _bufferLock = new ReentrantLock();
+  private static ByteBuffer END_OF_SPOOL = ByteBuffer.allocate(0);
+  private BlockingQueue<ByteBuffer> _free =
+    new ArrayBlockingQueue<>(NUM_BUFFERS);
+  private BlockingQueue<ByteBuffer> _full =
+    new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+  private Thread _writer;
+
+  public MidiFileRecorder(MidiSink target, Path path) throws IOException {
+    _target = target;
+    _path = path;
+    _spoolPath = path.resolveSibling(path.getFileName() + ".part");
+    _spool = FileChannel.open(_spoolPath, StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    for (int idx = 1; idx < NUM_BUFFERS; idx++) {
+      _free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+    putHeader(_buffer, 0, 1);
+    putTrackHeader(_buffer);
+    putTempo(_buffer);
+    _startNanos = System.nanoTime();
+    flush(true);
+    _writer = new Thread(() -> writeBuffers(), "MIDI recorder");
+    _writer.setDaemon(true);
+    _writer.start();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: MidiFileRecorder name.mid.part name.mid");
+      System.exit(1);
+    }
+    export(Paths.get(args[0]), Paths.get(args[1]));
+  }
+
+  @Override
+  public void noteOn(int channel, int noteValue, int velocity) {
+    _target.noteOn(channel, noteValue, velocity);
+    record(0x90, channel, noteValue, velocity, true);
+  }
+
+  @Override
+  public void noteOff(int channel, int noteValue) {
+    _target.noteOff(channel, noteValue);
+    record(0x80, channel, noteValue, NOTE_OFF_VELOCITY, true);
+  }
+
+  @Override
+  public void changePitchWheel(int channel, int lsb, int msb) {
+    _target.changePitchWheel(channel, lsb, msb);
+    record(0xE0, channel, lsb, msb, true);
+  }
+
+  @Override
+  public void changeInstrument(int channel, int instNum) {
+    _target.changeInstrument(channel, instNum);
+    record(0xC0, channel, instNum, 0, false);
+  }
+
+  /**
+   * Closes the target sink, waits for the writer thread to finish the
+   * spool, then exports the recording to the output file and deletes
+   * the spool.
+   */
+  @Override
+  public void close() {
+    _target.close();
+    _bufferLock.lock();
+    try {
+      flush(true);
+    }
+    finally {
+      _bufferLock.unlock();
+    }
+    try {
+      _full.put(END_OF_SPOOL);
+      _writer.join();
+      _spool.close();
+      export(_spoolPath, _path);
+      Files.delete(_spoolPath);
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void record(int command, int channel, int data1, int data2,
+                      boolean hasData2) {
+    long now = System.nanoTime();
+    long tick = (now - _startNanos) * TICKS_PER_QUARTER
+      / (MICROS_PER_QUARTER * 1000L);
+    _bufferLock.lock();
+    try {
+      if (_buffer.remaining() < MAX_EVENT_SIZE) {
+        flush(true);
+      }
+      putVarInt(_buffer, tick - _lastTick);
+      _lastTick = tick;
+      _buffer.put((byte)(command | channel));
+      _buffer.put((byte)(data1 & 0x7F));
+      if (hasData2) {
+        _buffer.put((byte)(data2 & 0x7F));
+      }
+    }
+    finally {
+      _bufferLock.unlock();
+    }
+  }
+
+  // Hands the buffer to the writer thread and carries on in a free one.
+  // If none is free, waits for one when wait is true, and otherwise
+  // keeps filling the current buffer.  Called holding _bufferLock.
+  private void flush(boolean wait) {
+    ByteBuffer next = _free.poll();
+    if (next == null && wait) {
+      try {
+        next = _free.take();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        _buffer.clear();
+        return;
+      }
+    }
+    if (next != null) {
+      _buffer.flip();
+      _full.add(_buffer);
+      _buffer = next;
+    }
+  }
+
+  // Called by the writer when nothing has been handed over for a while.
+  // If a message is being recorded, the buffer is left until next time.
+  private void flushPartial() {
+    if (_bufferLock.tryLock()) {
+      try {
+        if (_buffer.position() > 0) {
+          flush(false);
+        }
+      }
+      finally {
+        _bufferLock.unlock();
+      }
+    }
+  }
+
+  // Runs on the writer thread: appends each buffer handed over to the
+  // spool, then patches the track length, until close() ends the spool
+  private void writeBuffers() {
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    long spoolSize = 0;
+    try {
+      ByteBuffer buffer;
+      while ((buffer = _full.poll(FLUSH_INTERVAL_NANOS,
+                                  TimeUnit.NANOSECONDS)) != END_OF_SPOOL) {
+        if (buffer == null) {
+          flushPartial();
+          continue;
+        }
+        try {
+          while (buffer.hasRemaining()) {
+            spoolSize += _spool.write(buffer);
+          }
+          lengthBuffer.clear();
+          lengthBuffer.putInt(
+            (int)(spoolSize - HEADER_SIZE - TRACK_HEADER_SIZE));
+          lengthBuffer.flip();
+          _spool.write(lengthBuffer, HEADER_SIZE + 4);
+        }
+        catch (IOException e) {
+          e.printStackTrace();
+        }
+        buffer.clear();
+        _free.add(buffer);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the Type 1 file for a spool: a conductor track holding the
+   * tempo, then a track for each string up to the highest one played.
+   * The spool is read once to find the strings, then once per track.
+   */
+  public static void export(Path spoolPath, Path path) throws IOException {
+    int channelsUsed = 0;
+    try (SpoolReader reader = new SpoolReader(spoolPath)) {
+      while (reader.next()) {
+        if (reader._status < 0xF0) {
+          channelsUsed |= 1 << (reader._status & 0x0F);
+        }
+      }
+    }
+    int numStringTracks = 0;
+    for (int stringIdx = 0; stringIdx < SynthEngine.NUM_CHANNELS - 1;
+         stringIdx++) {
+      if ((channelsUsed & 1 << SynthEngine.channelForString(stringIdx))
+          != 0) {
+        numStringTracks = stringIdx + 1;
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    try (FileChannel out = FileChannel.open(path,
+           StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+           StandardOpenOption.TRUNCATE_EXISTING)) {
+      putHeader(buffer, 1, 1 + numStringTracks);
+      long trackStart = out.position() + buffer.position();
+      putTrackHeader(buffer);
+      putTempo(buffer);
+      putEndOfTrack(buffer);
+      patchTrackLength(out, buffer, trackStart);
+
+      for (int stringIdx = 0; stringIdx < numStringTracks; stringIdx++) {
+        int channel = SynthEngine.channelForString(stringIdx);
+        trackStart = out.position() + buffer.position();
+        putTrackHeader(buffer);
+        byte[] name = ("String " + (stringIdx + 1))
+          .getBytes(StandardCharsets.US_ASCII);
+        buffer.put((byte)0).put((byte)0xFF).put((byte)0x03)
+          .put((byte)name.length).put(name);
+        long lastTick = 0;
+        try (SpoolReader reader = new SpoolReader(spoolPath)) {
+          while (reader.next()) {
+            if (reader._status < 0xF0
+                && (reader._status & 0x0F) == channel) {
+              if (buffer.remaining() < MAX_EVENT_SIZE) {
+                write(out, buffer);
+              }
+              putVarInt(buffer, reader._tick - lastTick);
+              lastTick = reader._tick;
+              buffer.put((byte)reader._status).put((byte)reader._data1);
+              if (reader._numData == 2) {
+                buffer.put((byte)reader._data2);
+              }
+            }
+          }
+        }
+        putEndOfTrack(buffer);
+        patchTrackLength(out, buffer, trackStart);
+      }
+    }
+  }
+
+  // Writes out what's buffered, then the length of the track that
+  // started at trackStart
+  private static void patchTrackLength(FileChannel out, ByteBuffer buffer,
+                                       long trackStart) throws IOException {
+    write(out, buffer);
+    ByteBuffer length = ByteBuffer.allocate(4);
+    length.putInt((int)(out.position() - trackStart - TRACK_HEADER_SIZE));
+    length.flip();
+    out.write(length, trackStart + 4);
+  }
+
+  private static void write(FileChannel out, ByteBuffer buffer)
+      throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void putHeader(ByteBuffer buffer, int format,
+                                int numTracks) {
+    buffer.put("MThd".getBytes(StandardCharsets.US_ASCII));
+    buffer.putInt(6);
+    buffer.putShort((short)format);
+    buffer.putShort((short)numTracks);
+    buffer.putShort((short)TICKS_PER_QUARTER);
+  }
+
+  // The length is filled in later
+  private static void putTrackHeader(ByteBuffer buffer) {
+    buffer.put("MTrk".getBytes(StandardCharsets.US_ASCII));
+    buffer.putInt(0);
+  }
+
+  private static void putTempo(ByteBuffer buffer) {
+    buffer.put((byte)0).put((byte)0xFF).put((byte)0x51).put((byte)3);
+    buffer.put((byte)(MICROS_PER_QUARTER >> 16));
+    buffer.put((byte)(MICROS_PER_QUARTER >> 8));
+    buffer.put((byte)MICROS_PER_QUARTER);
+  }
+
+  private static void putEndOfTrack(ByteBuffer buffer) {
+    buffer.put((byte)0).put((byte)0xFF).put((byte)0x2F).put((byte)0);
+  }
+
+  private static void putVarInt(ByteBuffer buffer, long value) {
+    if (value >= 1 << 21) {
+      buffer.put((byte)(value >> 21 & 0x7F | 0x80));
+    }
+    if (value >= 1 << 14) {
+      buffer.put((byte)(value >> 14 & 0x7F | 0x80));
+    }
+    if (value >= 1 << 7) {
+      buffer.put((byte)(value >> 7 & 0x7F | 0x80));
+    }
+    buffer.put((byte)(value & 0x7F));
+  }
+
+  /**
+   * Reads the events of a spool in order, stopping at the end of the
+   * file or at an event cut short by a crash.
+   */
+  private static class SpoolReader implements AutoCloseable {
+    private FileChannel _in;
+    private ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean _eof;
+    long _tick;
+    int _status;
+    int _data1;
+    int _data2;
+    int _numData;
+
+    SpoolReader(Path spoolPath) throws IOException {
+      _in = FileChannel.open(spoolPath, StandardOpenOption.READ);
+      _in.position(HEADER_SIZE + TRACK_HEADER_SIZE);
+      _buffer.flip();
+    }
+
+    boolean next() throws IOException {
+      if (_buffer.remaining() < MAX_EVENT_SIZE && !_eof) {
+        _buffer.compact();
+        while (_buffer.hasRemaining() && !_eof) {
+          _eof = _in.read(_buffer) < 0;
+        }
+        _buffer.flip();
+      }
+      try {
+        long delta = readVarInt();
+        _status = _buffer.get() & 0xFF;
+        if (_status == 0xFF) {
+          _buffer.get();
+          int length = (int)readVarInt();
+          _buffer.position(_buffer.position() + length);
+          _numData = 0;
+        }
+        else {
+          int command = _status & 0xF0;
+          _numData = command == 0xC0 || command == 0xD0 ? 1 : 2;
+          _data1 = _buffer.get() & 0xFF;
+          if (_numData == 2) {
+            _data2 = _buffer.get() & 0xFF;
+          }
+        }
+        _tick += delta;
+        return true;
+      }
+      catch (BufferUnderflowException | IllegalArgumentException e) {
+        return false;
+      }
+    }
+
+    private long readVarInt() {
+      long value = 0;
+      int b;
+      do {
+        b = _buffer.get();
+        value = value << 7 | b & 0x7F;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+      _in.close();
+    }
+  }
+}
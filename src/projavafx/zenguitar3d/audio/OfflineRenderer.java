@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * OfflineRenderer.fx - Part of a JavaFX 3D, and touch API, example that
+ *                      uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import com.sun.media.sound.AudioSynthesizer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders performances to WAV files without a sound card, as fast as
+ * the CPU allows.  A performance is a MIDI Sequence of timestamped note,
+ * pitch wheel and program change events, such as a standard MIDI file.
+ * Each take gets its own software synthesizer, opened through its
+ * AudioSynthesizer stream instead of an audio line.  All of the events
+ * are scheduled at their timestamps, then the stream is read through
+ * to the end and written to the file.  Several takes can be rendered in
+ * parallel, one per core.
+ *
+ * As with SynthEngine, the system property zenguitar.soundbank can name
+ * a soundbank file to play instead of the built-in sounds.
+ *
+ * Usage: OfflineRenderer out-dir performance.mid...
+ */
+public class OfflineRenderer {
+  public static float SAMPLE_RATE = 44100;
+
+  // Rendered after the last event, so the final notes can ring out
+  public static double TAIL_SECS = 2;
+
+  private AudioFormat _format =
+    new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+
+  /**
+   * The audio length and the time taken to render one take.
+   */
+  public static class Result {
+    private File _wavFile;
+    private double _audioSecs;
+    private long _renderNanos;
+
+    Result(File wavFile, double audioSecs, long renderNanos) {
+      _wavFile = wavFile;
+      _audioSecs = audioSecs;
+      _renderNanos = renderNanos;
+    }
+
+    public File getWavFile() {
+      return _wavFile;
+    }
+
+    public double getAudioSecs() {
+      return _audioSecs;
+    }
+
+    public double getRenderSecs() {
+      return _renderNanos / 1e9;
+    }
+
+    /**
+     * Returns the seconds of audio rendered per second taken.
+     */
+    public double getRealTimeFactor() {
+      return _audioSecs / getRenderSecs();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %.1fs of audio in %.2fs, %.1fx real time",
+                           _wavFile.getName(), _audioSecs,
+                           getRenderSecs(), getRealTimeFactor());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: OfflineRenderer out-dir performance.mid...");
+      System.exit(1);
+    }
+    File outDir = new File(args[0]);
+    outDir.mkdirs();
+    List<File> midiFiles = new ArrayList<>();
+    for (int idx = 1; idx < args.length; idx++) {
+      midiFiles.add(new File(args[idx]));
+    }
+    new OfflineRenderer().renderAll(midiFiles, outDir,
+      Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Renders each MIDI file to a WAV file of the same name in outDir,
+   * numThreads at a time, and prints the real-time factor of each
+   * take and of the whole batch.
+   */
+  public List<Result> renderAll(List<File> midiFiles, File outDir,
+                                int numThreads)
+      throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(numThreads, midiFiles.size())));
+    long start = System.nanoTime();
+    List<Future<Result>> futures = new ArrayList<>();
+    for (File midiFile : midiFiles) {
+      String name = midiFile.getName().replaceFirst("\\.[^.]*$", "");
+      File wavFile = new File(outDir, name + ".wav");
+      futures.add(executor.submit(() ->
+        render(MidiSystem.getSequence(midiFile), wavFile)));
+    }
+    List<Result> results = new ArrayList<>();
+    double totalAudioSecs = 0;
+    try {
+      for (Future<Result> future : futures) {
+        Result result = future.get();
+        System.out.println(result);
+        results.add(result);
+        totalAudioSecs += result.getAudioSecs();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    double elapsedSecs = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format(
+      "%d takes: %.1fs of audio in %.2fs, %.1fx real time",
+      results.size(), totalAudioSecs, elapsedSecs,
+      totalAudioSecs / elapsedSecs));
+    return results;
+  }
+
+  /**
+   * Renders a performance to a WAV file on the calling thread.
+   */
+  public Result render(Sequence sequence, File wavFile)
+      throws MidiUnavailableException, InvalidMidiDataException,
+             IOException {
+    Synthesizer synthesizer = MidiSystem.getSynthesizer();
+    if (!(synthesizer instanceof AudioSynthesizer)) {
+      throw new MidiUnavailableException(
+        "Synthesizer can't render to a stream: "
+        + synthesizer.getDeviceInfo());
+    }
+    AudioSynthesizer synth = (AudioSynthesizer)synthesizer;
+    AudioInputStream stream = synth.openStream(_format, null);
+    try {
+      loadSoundbank(synth);
+      Receiver receiver = synth.getReceiver();
+      long endMicros = schedule(sequence, receiver);
+      double audioSecs = endMicros / 1e6 + TAIL_SECS;
+      long numFrames = (long)(audioSecs * _format.getFrameRate());
+
+      long start = System.nanoTime();
+      AudioSystem.write(new AudioInputStream(stream, _format, numFrames),
+                        AudioFileFormat.Type.WAVE, wavFile);
+      return new Result(wavFile, audioSecs, System.nanoTime() - start);
+    }
+    finally {
+      synth.close();
+    }
+  }
+
+  private void loadSoundbank(Synthesizer synth)
+      throws InvalidMidiDataException, IOException {
+    String soundbankPath = System.getProperty("zenguitar.soundbank");
+    if (soundbankPath != null) {
+      Soundbank soundbank = MidiSystem.getSoundbank(new File(soundbankPath));
+      if (synth.isSoundbankSupported(soundbank)) {
+        synth.loadAllInstruments(soundbank);
+      }
+    }
+  }
+
+  /**
+   * Sends every channel event in the sequence, in tick order, stamped
+   * with its time in microseconds.  The synthesizer holds each one until
+   * the stream reaches that time.  Returns the time of the last event.
+   */
+  long schedule(Sequence sequence, Receiver receiver) {
+    List<MidiEvent> events = new ArrayList<>();
+    for (Track track : sequence.getTracks()) {
+      for (int idx = 0; idx < track.size(); idx++) {
+        events.add(track.get(idx));
+      }
+    }
+    // Stable, so events on the same tick keep their track order
+    events.sort((e1, e2) -> Long.compare(e1.getTick(), e2.getTick()));
+
+    // Ticks are converted using the tempo in effect since the last
+    // tempo change, 120 bpm until the first
+    boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+    double microsPerTick = ppq
+      ? 500000.0 / sequence.getResolution()
+      : 1e6 / (sequence.getDivisionType() * sequence.getResolution());
+    long lastTick = 0;
+    double micros = 0;
+    for (MidiEvent event : events) {
+      micros += (event.getTick() - lastTick) * microsPerTick;
+      lastTick = event.getTick();
+      MidiMessage message = event.getMessage();
+      if (message instanceof ShortMessage) {
+        receiver.send(message, (long)micros);
+      }
+      else if (ppq && message instanceof MetaMessage
+               && ((MetaMessage)message).getType() == 0x51) {
+        byte[] data = ((MetaMessage)message).getData();
+        int microsPerQuarter = (data[0] & 0xff) << 16
+          | (data[1] & 0xff) << 8 | (data[2] & 0xff);
+        microsPerTick = (double)microsPerQuarter / sequence.getResolution();
+      }
+    }
+    return (long)micros;
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ParallelSynthSink.fx - Part of a JavaFX 3D, and touch API, example that
+ *                        uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import com.sun.media.sound.AudioSynthesizer;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A MidiSink that spreads synthesis over several cores.  The channels,
+ * and so the voices playing on them, are split into groups, channel c
+ * going to group c % numGroups.  Each group has its own software
+ * synthesizer, opened as an AudioSynthesizer stream.  A mixing thread
+ * has every group render its next block on a worker pool, sums the
+ * blocks in group order, so the output doesn't depend on which worker
+ * finishes first, and writes the mix to a SourceDataLine through an
+ * AudioOutput, which sizes the latency to what the machine sustains.
+ *
+ * With a null line the mix is discarded and blocks are rendered as fast
+ * as they can be, which is how ParallelSynthBench measures scaling.
+ */
+public class ParallelSynthSink implements MidiSink {
+  public static float SAMPLE_RATE = 44100;
+
+  // About 5.8 ms at 44.1 kHz
+  public static int BLOCK_FRAMES = 256;
+
+  private static int CHANNELS = 2;
+  private static int FRAME_SIZE = CHANNELS * 2;
+
+  private AudioFormat _format =
+    new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+  private AudioSynthesizer[] _synths;
+  private DirectMidiSink[] _groupSinks;
+  private AudioInputStream[] _streams;
+  private byte[][] _groupBlocks;
+  private List<Callable<Integer>> _renderTasks = new ArrayList<>();
+  private ExecutorService _workers;
+  private AudioOutput _output;
+  private byte[] _mix;
+  private Thread _mixThread;
+  private volatile boolean _running = true;
+  private volatile long _numBlocks;
+
+  /**
+   * Opens numGroups synthesizers and starts mixing them into line, or
+   * discarding the mix if line is null.  The line is opened and started
+   * if it isn't already.
+   */
+  public ParallelSynthSink(int numGroups, SourceDataLine line)
+      throws MidiUnavailableException {
+    _synths = new AudioSynthesizer[numGroups];
+    _groupSinks = new DirectMidiSink[numGroups];
+    _streams = new AudioInputStream[numGroups];
+    _groupBlocks = new byte[numGroups][BLOCK_FRAMES * FRAME_SIZE];
+    _mix = new byte[BLOCK_FRAMES * FRAME_SIZE];
+    for (int group = 0; group < numGroups; group++) {
+      Synthesizer synth = MidiSystem.getSynthesizer();
+      if (!(synth instanceof AudioSynthesizer)) {
+        throw new MidiUnavailableException(
+          "Synthesizer can't render to a stream: " + synth.getDeviceInfo());
+      }
+      _synths[group] = (AudioSynthesizer)synth;
+      _streams[group] = _synths[group].openStream(_format, null);
+      Receiver receiver = _synths[group].getReceiver();
+      _groupSinks[group] = new DirectMidiSink(receiver);
+      int renderGroup = group;
+      _renderTasks.add(() -> render(renderGroup));
+    }
+    _workers = Executors.newFixedThreadPool(numGroups, runnable -> {
+      Thread thread = new Thread(runnable, "Synth group");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MAX_PRIORITY);
+      return thread;
+    });
+    if (line != null) {
+      _output = new AudioOutput(line, _format, BLOCK_FRAMES);
+      _mixThread = new Thread(() -> mixToLine(), "Synth mix");
+      _mixThread.setDaemon(true);
+      _mixThread.setPriority(Thread.MAX_PRIORITY);
+      _mixThread.start();
+    }
+  }
+
+  /**
+   * Opens numGroups synthesizers mixed into the default audio line.
+   */
+  public static ParallelSynthSink open(int numGroups)
+      throws MidiUnavailableException {
+    try {
+      AudioFormat format =
+        new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+      return new ParallelSynthSink(numGroups,
+                                   AudioSystem.getSourceDataLine(format));
+    }
+    catch (LineUnavailableException | IllegalArgumentException e) {
+      throw new MidiUnavailableException("No audio line: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the output the mix is played through, or null if it's
+   * discarded.
+   */
+  public AudioOutput getOutput() {
+    return _output;
+  }
+
+  /**
+   * Returns the synthesizer rendering the given group, e.g. to load
+   * instruments into.
+   */
+  public Synthesizer getSynthesizer(int group) {
+    return _synths[group];
+  }
+
+  /**
+   * Returns every group's synthesizer, in group order.  Instruments
+   * from a soundbank need loading into all of them.
+   */
+  public Synthesizer[] getSynthesizers() {
+    return _synths.clone();
+  }
+
+  public int getNumGroups() {
+    return _synths.length;
+  }
+
+  public long getNumBlocks() {
+    return _numBlocks;
+  }
+
+  // Each group sink is only called with the lock held, as DirectMidiSink
+  // reuses its messages
+  @Override
+  public void noteOn(int channel, int noteValue, int velocity) {
+    DirectMidiSink sink = sinkFor(channel);
+    synchronized (sink) {
+      sink.noteOn(channel, noteValue, velocity);
+    }
+  }
+
+  @Override
+  public void noteOff(int channel, int noteValue) {
+    DirectMidiSink sink = sinkFor(channel);
+    synchronized (sink) {
+      sink.noteOff(channel, noteValue);
+    }
+  }
+
+  @Override
+  public void changePitchWheel(int channel, int lsb, int msb) {
+    DirectMidiSink sink = sinkFor(channel);
+    synchronized (sink) {
+      sink.changePitchWheel(channel, lsb, msb);
+    }
+  }
+
+  @Override
+  public void changeInstrument(int channel, int instNum) {
+    DirectMidiSink sink = sinkFor(channel);
+    synchronized (sink) {
+      sink.changeInstrument(channel, instNum);
+    }
+  }
+
+  @Override
+  public void close() {
+    _running = false;
+    if (_mixThread != null) {
+      try {
+        _mixThread.join(1000);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      _output.close();
+    }
+    _workers.shutdownNow();
+    for (AudioSynthesizer synth : _synths) {
+      synth.close();
+    }
+  }
+
+  /**
+   * Renders every group's next block in parallel and mixes them,
+   * returning the mixed block.  Called by the mixing thread, or
+   * directly when there is no line.
+   */
+  public byte[] renderBlock() throws InterruptedException {
+    try {
+      for (Future<Integer> future : _workers.invokeAll(_renderTasks)) {
+        future.get();
+      }
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    for (int idx = 0; idx < _mix.length; idx += 2) {
+      int sum = 0;
+      for (byte[] block : _groupBlocks) {
+        sum += (short)(block[idx] & 0xFF | block[idx + 1] << 8);
+      }
+      sum = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum));
+      _mix[idx] = (byte)sum;
+      _mix[idx + 1] = (byte)(sum >> 8);
+    }
+    _numBlocks++;
+    return _mix;
+  }
+
+  private DirectMidiSink sinkFor(int channel) {
+    return _groupSinks[channel % _groupSinks.length];
+  }
+
+  private int render(int group) throws IOException {
+    byte[] block = _groupBlocks[group];
+    int offset = 0;
+    while (offset < block.length) {
+      int count = _streams[group].read(block, offset, block.length - offset);
+      if (count < 0) {
+        throw new IOException("Synthesizer stream ended");
+      }
+      offset += count;
+    }
+    return offset;
+  }
+
+  private void mixToLine() {
+    try {
+      _output.open();
+      while (_running) {
+        _output.write(renderBlock());
+      }
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+}
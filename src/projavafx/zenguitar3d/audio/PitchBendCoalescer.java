@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * PitchBendCoalescer.fx - Part of a JavaFX 3D, and touch API, example that
+ *                         uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import java.util.Arrays;
+
+/**
+ * Coalesces pitch wheel changes per channel on the MIDI dispatch
+ * thread.  Each change only sets the channel's target value.  The
+ * channel then moves toward it by at most MAX_STEP per message, with at
+ * most one message every INTERVAL_NANOS, and nothing is sent once it
+ * has arrived.  A fast bend therefore sends a short, smooth ramp rather
+ * than a message per touch event.
+ *
+ * Notes must start at the current target, so flush() sends it at once
+ * before a note is played or stopped.
+ *
+ * The system property zenguitar.bend.interval sets the interval in
+ * microseconds (default 2000).
+ */
+class PitchBendCoalescer {
+  static long INTERVAL_NANOS =
+    Long.getLong("zenguitar.bend.interval", 2000) * 1000;
+
+  // Largest change in one message, 1/8 of the range either side
+  static int MAX_STEP = 1024;
+
+  private MidiSink _target;
+  private int[] _targetValues;
+  private int[] _sentValues;
+  private long[] _sentTimes;
+
+  // Number of channels whose sent value hasn't reached the target
+  private int _numPending;
+
+  private volatile long _receivedCount;
+  private volatile long _sentCount;
+
+  PitchBendCoalescer(MidiSink target, int numChannels) {
+    _target = target;
+    _targetValues = new int[numChannels];
+    _sentValues = new int[numChannels];
+    _sentTimes = new long[numChannels];
+    Arrays.fill(_targetValues, SynthEngine.PITCH_WHEEL_CENTER);
+    Arrays.fill(_sentValues, SynthEngine.PITCH_WHEEL_CENTER);
+  }
+
+  void setTarget(int channel, int value) {
+    _receivedCount++;
+    boolean wasPending = _sentValues[channel] != _targetValues[channel];
+    _targetValues[channel] = value;
+    boolean pending = _sentValues[channel] != value;
+    if (pending != wasPending) {
+      _numPending += pending ? 1 : -1;
+    }
+  }
+
+  boolean isPending() {
+    return _numPending > 0;
+  }
+
+  /**
+   * Sends a channel's target value straight away if it hasn't been.
+   */
+  void flush(int channel, long now) {
+    if (_sentValues[channel] != _targetValues[channel]) {
+      send(channel, _targetValues[channel], now);
+    }
+  }
+
+  /**
+   * Sends the next step toward the target on each channel that is due
+   * one.  Returns the nanoseconds until another step is due, or -1 if
+   * every channel has reached its target.
+   */
+  long step(long now) {
+    long wait = -1;
+    for (int channel = 0; channel < _targetValues.length; channel++) {
+      int remaining = _targetValues[channel] - _sentValues[channel];
+      if (remaining != 0) {
+        long untilDue = _sentTimes[channel] + INTERVAL_NANOS - now;
+        if (untilDue <= 0) {
+          int delta = Math.max(-MAX_STEP, Math.min(MAX_STEP, remaining));
+          send(channel, _sentValues[channel] + delta, now);
+          untilDue = delta == remaining ? -1 : INTERVAL_NANOS;
+        }
+        if (untilDue > 0 && (wait < 0 || untilDue < wait)) {
+          wait = untilDue;
+        }
+      }
+    }
+    return wait;
+  }
+
+  private void send(int channel, int value, long now) {
+    boolean wasPending = _sentValues[channel] != _targetValues[channel];
+    _target.changePitchWheel(channel, value & 0x7f, value >> 7);
+    _sentValues[channel] = value;
+    _sentTimes[channel] = now;
+    _sentCount++;
+    if (wasPending && value == _targetValues[channel]) {
+      _numPending--;
+    }
+  }
+
+  long getReceivedCount() {
+    return _receivedCount;
+  }
+
+  long getSentCount() {
+    return _sentCount;
+  }
+}
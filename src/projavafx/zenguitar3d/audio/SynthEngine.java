@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * SynthEngine.fx - Part of a JavaFX 3D, and touch API, example that
+ *                  uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+import projavafx.zenguitar3d.perf.LatencyTracer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A single synthesizer shared by all of the strings on the fretboard.
+ * Each string plays on its own MIDI channel, so notes, pitch bends and
+ * instrument changes on one string don't affect the others.
+ *
+ * Messages go straight to the synthesizer as ShortMessages.  Setting
+ * the system property zenguitar.midi.jfugue=true plays them through
+ * JFugue patterns instead, which is also used if the direct path can't
+ * be opened.  Either way the messages are queued and sent from a
+ * MidiDispatcher thread, so callers never wait on the synthesizer.
+ *
+ * Setting the system property zenguitar.synth.groups=n (n > 1) plays
+ * through a ParallelSynthSink instead, rendering the channels as n
+ * groups on separate cores.  Its output is an AudioOutput, which finds
+ * the lowest latency the machine plays without underruns; setting
+ * zenguitar.audio.adaptive=true uses it with a single group.
+ *
+ * The system property zenguitar.soundbank can name a soundbank file
+ * (e.g. a General MIDI .sf2) to play instead of the built-in sounds.
+ * Its instruments are loaded in the background by an
+ * InstrumentPrefetcher as they're browsed and picked, into every group's
+ * synthesizer when there are several.
+ *
+ * Notes are counted by a VoiceManager, which caps how many sound at
+ * once and makes sure each one is stopped exactly once.
+ *
+ * The system property zenguitar.midi.record can name a MIDI file to
+ * record the performance to, with a MidiFileRecorder.
+ *
+ * Opening the synthesizer takes a few hundred milliseconds, so it's
+ * done by open(), which may be called on a worker thread.  Notes played
+ * before then are dropped, and instrument changes are remembered and
+ * sent once it's open.
+ *
+ * The dispatcher's ring takes one producer at a time, but messages come
+ * from the JavaFX Application Thread, from open() and from the prefetch
+ * thread.  Every message is sent holding _sendLock, which makes the
+ * holder the ring's producer.  The lock is only ever held to update the
+ * voices and channels and to queue messages, none of which wait, so a
+ * touch never waits behind the synthesizer.  Opening and closing the
+ * synthesizer happen outside it.
+ */
+public class SynthEngine {
+  public static int NUM_CHANNELS = 16;
+
+  // 14 bit pitch wheel values, the center being no bend
+  public static int PITCH_WHEEL_CENTER = 8192;
+  public static int PITCH_WHEEL_MAX = 16383;
+
+  // MIDI channel 10 (index 9) is reserved for percussion
+  private static int PERCUSSION_CHANNEL = 9;
+
+  // Guards the fields below and sending to _sink, see the class comment
+  private Object _sendLock = new Object();
+
+  private volatile MidiSink _sink;
+  private volatile MidiDispatcher _dispatcher;
+  private InstrumentPrefetcher _prefetcher;
+  private volatile AudioOutput _output;
+  private boolean _closed;
+  private VoiceManager _voices = new VoiceManager(VoiceManager.MAX_VOICES);
+
+  // Zero based instrument currently loaded on each channel, -1 if unknown
+  private int[] _channelInsts;
+
+  public SynthEngine() {
+    _channelInsts = new int[NUM_CHANNELS];
+    Arrays.fill(_channelInsts, -1);
+  }
+
+  public SynthEngine(MidiSink sink) {
+    _sink = sink;
+    _channelInsts = new int[NUM_CHANNELS];
+    Arrays.fill(_channelInsts, -1);
+  }
+
+  /**
+   * Opens the synthesizer and soundbank, then sends the instruments
+   * already chosen for each channel.  Callers aren't blocked meanwhile.
+   */
+  public void open() {
+    MidiSink sink = openSink(Boolean.getBoolean("zenguitar.midi.jfugue"));
+    if (sink == null) {
+      return;
+    }
+    MidiDispatcher dispatcher = new MidiDispatcher(openRecorder(sink));
+    InstrumentPrefetcher prefetcher = null;
+    String soundbankPath = System.getProperty("zenguitar.soundbank");
+    if (soundbankPath != null && sink instanceof DirectMidiSink) {
+      prefetcher = openPrefetcher(
+        new Synthesizer[] {((DirectMidiSink)sink).getSynthesizer()},
+        soundbankPath);
+    }
+    else if (soundbankPath != null && sink instanceof ParallelSynthSink) {
+      prefetcher = openPrefetcher(
+        ((ParallelSynthSink)sink).getSynthesizers(), soundbankPath);
+    }
+    else if (soundbankPath != null) {
+      System.err.println("Soundbank can't be loaded through JFugue: " +
+                         soundbankPath);
+    }
+    synchronized (_sendLock) {
+      if (!_closed) {
+        attach(sink, dispatcher, prefetcher);
+        return;
+      }
+    }
+    if (prefetcher != null) {
+      prefetcher.close();
+    }
+    dispatcher.close();
+  }
+
+  // Starts sending through the dispatcher, holding _sendLock
+  private void attach(MidiSink sink, MidiDispatcher dispatcher,
+                      InstrumentPrefetcher prefetcher) {
+    _dispatcher = dispatcher;
+    _sink = dispatcher;
+    _prefetcher = prefetcher;
+    if (sink instanceof ParallelSynthSink) {
+      _output = ((ParallelSynthSink)sink).getOutput();
+    }
+    for (int channel = 0; channel < NUM_CHANNELS; channel++) {
+      int instNum = _channelInsts[channel];
+      if (instNum >= 0) {
+        if (_prefetcher != null) {
+          _prefetcher.pin(channel, instNum);
+          _prefetcher.prefetch(instNum);
+        }
+        _sink.changeInstrument(channel, instNum);
+      }
+    }
+  }
+
+  public boolean isOpen() {
+    return _sink != null;
+  }
+
+  private static MidiSink openSink(boolean useJFugue) {
+    int numSynthGroups = Integer.getInteger("zenguitar.synth.groups", 1);
+    boolean adaptive = Boolean.getBoolean("zenguitar.audio.adaptive");
+    if (!useJFugue && (numSynthGroups > 1 || adaptive)) {
+      try {
+        return ParallelSynthSink.open(Math.max(1, numSynthGroups));
+      }
+      catch (MidiUnavailableException e) {
+        e.printStackTrace();
+      }
+    }
+    if (!useJFugue) {
+      try {
+        Synthesizer synth = MidiSystem.getSynthesizer();
+        DirectMidiSink sink = new DirectMidiSink(synth);
+        LatencyTracer.setOutputLatencyNanos(synth.getLatency() * 1000);
+        return sink;
+      }
+      catch (MidiUnavailableException e) {
+        e.printStackTrace();
+      }
+    }
+    try {
+      return new JFugueMidiSink();
+    }
+    catch (MidiUnavailableException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  // Wraps the sink in a recorder if one has been asked for
+  private static MidiSink openRecorder(MidiSink sink) {
+    String recordPath = System.getProperty("zenguitar.midi.record");
+    if (recordPath != null) {
+      try {
+        return new MidiFileRecorder(sink, Paths.get(recordPath));
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return sink;
+  }
+
+  private InstrumentPrefetcher openPrefetcher(Synthesizer[] synths,
+                                              String soundbankPath) {
+    try {
+      Soundbank soundbank = MidiSystem.getSoundbank(new File(soundbankPath));
+      if (synths[0].isSoundbankSupported(soundbank)) {
+        return new InstrumentPrefetcher(synths, soundbank,
+                                        instNum -> instrumentLoaded(instNum));
+      }
+      System.err.println("Soundbank not supported: " + soundbankPath);
+    }
+    catch (InvalidMidiDataException | IOException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the MIDI channel for a zero based string index, skipping
+   * the percussion channel.
+   */
+  public static int channelForString(int stringIdx) {
+    int channel = stringIdx;
+    if (channel >= PERCUSSION_CHANNEL) {
+      channel++;
+    }
+    return channel % NUM_CHANNELS;
+  }
+
+  public void noteOn(int channel, int noteValue, int velocity) {
+    noteOn(channel, noteValue, velocity, 0);
+  }
+
+  /**
+   * Plays a note caused by a touch received at touchTime (see
+   * LatencyTracer), or 0 if the note isn't being traced.
+   */
+  public void noteOn(int channel, int noteValue, int velocity,
+                     long touchTime) {
+    synchronized (_sendLock) {
+      if (_sink == null) {
+        return;
+      }
+      int stop = _voices.noteOn(channel, noteValue, velocity);
+      if (stop != VoiceManager.NONE) {
+        _sink.noteOff(VoiceManager.channelOf(stop),
+                      VoiceManager.noteValueOf(stop));
+      }
+      if (_dispatcher != null) {
+        _dispatcher.noteOn(channel, noteValue, velocity, touchTime);
+        LatencyTracer.record(LatencyTracer.ENQUEUED, touchTime);
+      }
+      else {
+        _sink.noteOn(channel, noteValue, velocity);
+        LatencyTracer.recordSent(touchTime);
+      }
+    }
+  }
+
+  /**
+   * Stops a note, if it's still sounding.
+   */
+  public void noteOff(int channel, int noteValue) {
+    synchronized (_sendLock) {
+      if (_sink != null && _voices.noteOff(channel, noteValue)) {
+        _sink.noteOff(channel, noteValue);
+      }
+    }
+  }
+
+  /**
+   * Sets a channel's 14 bit pitch wheel value, from 0 to
+   * PITCH_WHEEL_MAX.
+   */
+  public void changePitchWheel(int channel, int value) {
+    synchronized (_sendLock) {
+      if (_sink != null) {
+        _sink.changePitchWheel(channel, value & 0x7f, value >> 7);
+      }
+    }
+  }
+
+  /**
+   * Loads a zero based instrument on a channel.  Nothing is sent if
+   * the channel already has that instrument.
+   */
+  public void changeInstrument(int channel, int instNum) {
+    synchronized (_sendLock) {
+      if (_channelInsts[channel] != instNum) {
+        if (_prefetcher != null) {
+          _prefetcher.pin(channel, instNum);
+          _prefetcher.prefetch(instNum);
+        }
+        if (_sink != null) {
+          _sink.changeInstrument(channel, instNum);
+        }
+        _channelInsts[channel] = instNum;
+      }
+    }
+  }
+
+  /**
+   * Starts loading one based instruments that may be played soon, most
+   * likely first.  Does nothing unless a soundbank has been configured.
+   */
+  public void prefetchInstruments(int... oneBasedInstNums) {
+    InstrumentPrefetcher prefetcher;
+    synchronized (_sendLock) {
+      prefetcher = _prefetcher;
+    }
+    if (prefetcher != null) {
+      int[] instNums = new int[oneBasedInstNums.length];
+      for (int idx = 0; idx < instNums.length; idx++) {
+        instNums[idx] = oneBasedInstNums[idx] - 1;
+      }
+      prefetcher.prefetch(instNums);
+    }
+  }
+
+  // Channels already playing an instrument that has just been loaded
+  // are switched over to it.  Called on the prefetch thread.
+  private void instrumentLoaded(int instNum) {
+    synchronized (_sendLock) {
+      for (int channel = 0; channel < NUM_CHANNELS; channel++) {
+        if (_sink != null && _channelInsts[channel] == instNum) {
+          _sink.changeInstrument(channel, instNum);
+        }
+      }
+    }
+  }
+
+  public VoiceManager getVoiceManager() {
+    return _voices;
+  }
+
+  /**
+   * Returns the output the synthesizers are mixed into, or null if the
+   * synthesizer plays through its own line.
+   */
+  public AudioOutput getAudioOutput() {
+    return _output;
+  }
+
+  /**
+   * Returns the dispatcher queueing messages for the synthesizer, or
+   * null if the engine was given a sink directly.
+   */
+  public MidiDispatcher getDispatcher() {
+    return _dispatcher;
+  }
+
+  /**
+   * Stops sending, then closes the prefetcher and the sink.  Notes
+   * played meanwhile are dropped rather than waiting for the close.
+   */
+  public void close() {
+    InstrumentPrefetcher prefetcher;
+    MidiSink sink;
+    synchronized (_sendLock) {
+      _closed = true;
+      prefetcher = _prefetcher;
+      sink = _sink;
+      _prefetcher = null;
+      _sink = null;
+      _dispatcher = null;
+    }
+    if (prefetcher != null) {
+      prefetcher.close();
+    }
+    if (sink != null) {
+      sink.close();
+    }
+  }
+}
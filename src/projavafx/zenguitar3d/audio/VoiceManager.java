@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * VoiceManager.fx - Part of a JavaFX 3D, and touch API, example that
+ *                   uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.audio;
+
+/**
+ * Keeps track of the notes sounding on every channel and caps how many
+ * there are at once.  SynthEngine asks it before each note-on and
+ * note-off:
+ *
+ *   - A note-on when the cap has been reached steals a voice, whose
+ *     note-off is sent first.  The voice stolen is the oldest, or with
+ *     the system property zenguitar.voice.steal=quietest the one with
+ *     the lowest velocity (the oldest of those).
+ *   - A note-on for a key already sounding on the channel retriggers
+ *     it, sending its note-off first, so one note-off always ends it.
+ *   - A note-off is only sent for a note that is still sounding, so
+ *     stolen notes and unknown notes aren't stopped twice.
+ *
+ * Every note-on is thereby matched by exactly one note-off.  The system
+ * property zenguitar.polyphony sets the cap (default 32).  Voices are
+ * held in preallocated arrays and found by a linear scan, which at
+ * these sizes is cheaper than hashing and never allocates.
+ */
+public class VoiceManager {
+  public static int MAX_VOICES = Integer.getInteger("zenguitar.polyphony", 32);
+  public static boolean STEAL_QUIETEST =
+    "quietest".equals(System.getProperty("zenguitar.voice.steal"));
+
+  // Returned by noteOn when no voice has to be stopped first
+  public static int NONE = -1;
+
+  private int[] _channels;
+  private int[] _noteValues;
+  private int[] _velocities;
+  private long[] _startOrders;
+  private int _numActive;
+  private long _nextStartOrder;
+
+  private long _numStarted;
+  private long _numStolen;
+  private int _maxActive;
+
+  public VoiceManager(int maxVoices) {
+    _channels = new int[maxVoices];
+    _noteValues = new int[maxVoices];
+    _velocities = new int[maxVoices];
+    _startOrders = new long[maxVoices];
+  }
+
+  /**
+   * Starts a voice for a note, returning the voice that must be stopped
+   * first as channel << 8 | noteValue, or NONE.
+   */
+  public int noteOn(int channel, int noteValue, int velocity) {
+    int stop = NONE;
+    int voice = indexOf(channel, noteValue);
+    if (voice < 0 && _numActive == _channels.length) {
+      voice = chooseVictim();
+      _numStolen++;
+    }
+    if (voice >= 0) {
+      stop = _channels[voice] << 8 | _noteValues[voice];
+    }
+    else {
+      voice = _numActive++;
+    }
+    _channels[voice] = channel;
+    _noteValues[voice] = noteValue;
+    _velocities[voice] = velocity;
+    _startOrders[voice] = _nextStartOrder++;
+    _numStarted++;
+    if (_numActive > _maxActive) {
+      _maxActive = _numActive;
+    }
+    return stop;
+  }
+
+  /**
+   * Ends a note's voice, returning false if it wasn't sounding.
+   */
+  public boolean noteOff(int channel, int noteValue) {
+    int voice = indexOf(channel, noteValue);
+    if (voice < 0) {
+      return false;
+    }
+    // Keep the active voices packed at the front
+    int last = --_numActive;
+    _channels[voice] = _channels[last];
+    _noteValues[voice] = _noteValues[last];
+    _velocities[voice] = _velocities[last];
+    _startOrders[voice] = _startOrders[last];
+    return true;
+  }
+
+  public static int channelOf(int voice) {
+    return voice >> 8;
+  }
+
+  public static int noteValueOf(int voice) {
+    return voice & 0xFF;
+  }
+
+  public int getNumActiveVoices() {
+    return _numActive;
+  }
+
+  public int getMaxActiveVoices() {
+    return _maxActive;
+  }
+
+  public long getNumStarted() {
+    return _numStarted;
+  }
+
+  public long getNumStolen() {
+    return _numStolen;
+  }
+
+  private int chooseVictim() {
+    int victim = 0;
+    for (int voice = 1; voice < _numActive; voice++) {
+      boolean quieter = STEAL_QUIETEST
+        && _velocities[voice] < _velocities[victim];
+      boolean asQuiet = !STEAL_QUIETEST
+        || _velocities[voice] == _velocities[victim];
+      if (quieter
+          || asQuiet && _startOrders[voice] < _startOrders[victim]) {
+        victim = voice;
+      }
+    }
+    return victim;
+  }
+
+  private int indexOf(int channel, int noteValue) {
+    for (int voice = 0; voice < _numActive; voice++) {
+      if (_noteValues[voice] == noteValue && _channels[voice] == channel) {
+        return voice;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "Voices: active=%d maxActive=%d limit=%d started=%d stolen=%d",
+      _numActive, _maxActive, _channels.length, _numStarted, _numStolen);
+  }
+}
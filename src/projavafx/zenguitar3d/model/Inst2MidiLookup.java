@@ -35,36 +35,16 @@
 package projavafx.zenguitar3d.model;
 
 public class Inst2MidiLookup {
-  // Midi instruments are 1 based
-  private static int pickerIdx2midi[] = {
-    46,  // Pizzicato Strings
-    47,  // Orchestral Harp
-    48,  // Timpani
-    57,  // Trumpet
-    58,  // Trombone
-    61,  // French Horn
-    67,  // Tenor Sax
-    72,  // Clarinet
-    23, // Harmonica 76,  // Pan Flute
-    106, // Banjo
-    1,   // Acoustic Grand Piano
-    5,   // Electric Piano 1
-    14,  // Xylophone
-    22,  // Accordion
-    25,  // Acoustic Guitar (nylon)
-    31,  // Distortion Guitar
-    33,  // Acoustic Bass
-    41,  // Violin
-    43,  // Cello
-    47
-    //108   // Koto
-  };
-
+  // Midi instruments are 1 based, 0 for an unknown picker index
   public static int getMidiByPickerIdx(int pickerIdx) {
-    int midiNum = 0;
-    if (pickerIdx >= 0 && pickerIdx < pickerIdx2midi.length) {
-      midiNum = pickerIdx2midi[pickerIdx];
-    }
-    return midiNum;
+    return InstConfigRegistry.getInstance().getMidiByPickerIdx(pickerIdx);
+  }
+
+  public static int getNumPickerFaces() {
+    return InstConfigRegistry.getInstance().getNumPickerFaces();
+  }
+
+  public static int getNumPickerArtFaces() {
+    return InstConfigRegistry.getInstance().getNumPickerArtFaces();
   }
 }
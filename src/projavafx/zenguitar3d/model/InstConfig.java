@@ -33,58 +33,66 @@
  */
 package projavafx.zenguitar3d.model;
 
+/**
+ * How an instrument is played on the fretboard.  Instances are
+ * immutable and shared; they're created once by InstConfigRegistry.
+ */
 public class InstConfig {
-  private static int DEFAULT_NUM_STRINGS = 10;
-  private static int CHINESE_GUITAR_NUM_STRINGS = 4;
-
-  private static int DEFAULT_OPEN_NOTE_VALS[]
-    = {59, 54, 49, 44, 39, 34, 29, 24, 19, 14};
-  private static int CHINESE_GUITAR_OPEN_NOTE_VALS[]
-    // = {34, 29, 25, 20};
-    // = {51, 46, 44, 39, 34, 29, 24, 19};
-      = {51, 46, 44, 39};
-
   public static InstConfig getInstConfigForMidi(int midiInstNum) {
-    InstConfig instConfig;
-    if (midiInstNum == 47) { //Koto (closest MIDI instrument?)
-      instConfig =
-        new InstConfig(CHINESE_GUITAR_NUM_STRINGS,
-                       CHINESE_GUITAR_OPEN_NOTE_VALS,
-                       true);
-    }
-    else {
-      instConfig =
-        new InstConfig(DEFAULT_NUM_STRINGS,
-                       DEFAULT_OPEN_NOTE_VALS,
-                       true);
-    }
-    return instConfig;
+    return InstConfigRegistry.getInstance()
+      .getInstConfigForMidi(midiInstNum);
   }
 
-  private int _numStrings;
+  private int _midiInstNum;
+  private String _name;
+  private String _tuningName;
   private int[] _openNoteVals;
   private boolean _bendEnabled;
 
-  public InstConfig() {
-    this(DEFAULT_NUM_STRINGS,
-         DEFAULT_OPEN_NOTE_VALS,
-         false);
-  }
-
-  public InstConfig(int numStrings,
+  public InstConfig(int midiInstNum,
+                    String name,
+                    String tuningName,
                     int openNoteVals[],
                     boolean bendEnabled) {
-    _numStrings = numStrings;
-    _openNoteVals = openNoteVals;
+    _midiInstNum = midiInstNum;
+    _name = name;
+    _tuningName = tuningName;
+    _openNoteVals = openNoteVals.clone();
     _bendEnabled = bendEnabled;
   }
 
+  /**
+   * The one based General MIDI program number.
+   */
+  public int getMidiInstNum() {
+    return _midiInstNum;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  /**
+   * Name of the tuning, which identifies the string count and open
+   * note values.
+   */
+  public String getTuningName() {
+    return _tuningName;
+  }
+
   public int getNumStrings() {
-    return _numStrings;
+    return _openNoteVals.length;
+  }
+
+  public int getOpenNoteVal(int stringIdx) {
+    return _openNoteVals[stringIdx];
   }
 
+  /**
+   * Returns a copy of the open note values, one per string.
+   */
   public int[] getOpenNoteVals() {
-    return _openNoteVals;
+    return _openNoteVals.clone();
   }
 
   public boolean isBendEnabled() {
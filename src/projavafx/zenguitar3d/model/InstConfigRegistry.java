@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * InstConfigRegistry.fx - Part of a JavaFX 3D, and touch API, example that
+ *                         uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Every instrument configuration, built once from the bundled
+ * instruments.properties file.  Lookups index straight into arrays and
+ * return shared, immutable InstConfigs, so they never allocate.
+ *
+ * The data is validated as it's loaded.  A missing program, unknown
+ * tuning or out of range value throws an IllegalStateException, so bad
+ * data stops the application at startup rather than mid-performance.
+ */
+public class InstConfigRegistry {
+  public static int NUM_PROGRAMS = 128;
+
+  // Limited by the MIDI channels available to strings
+  public static int MAX_STRINGS = 15;
+
+  // Setting the system property zenguitar.picker=all follows the
+  // picker's faces with every program they don't already include
+  public static boolean PICK_ALL_PROGRAMS =
+    "all".equals(System.getProperty("zenguitar.picker"));
+
+  private static String DATA_FILE = "instruments.properties";
+  private static String DEFAULT_TUNING = "default";
+
+  // Loaded when the class is first used, which is during startup
+  private static InstConfigRegistry _instance = load();
+
+  // Indexed by one based program number, so entry 0 is the default
+  private InstConfig[] _instConfigs = new InstConfig[NUM_PROGRAMS + 1];
+  private int[] _pickerIdx2midi;
+  private int _numPickerArtFaces;
+
+  public static InstConfigRegistry getInstance() {
+    return _instance;
+  }
+
+  static InstConfigRegistry load() {
+    Properties props = new Properties();
+    try (InputStream in =
+           InstConfigRegistry.class.getResourceAsStream(DATA_FILE)) {
+      if (in == null) {
+        throw new IllegalStateException(DATA_FILE + " not found");
+      }
+      props.load(in);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Can't read " + DATA_FILE, e);
+    }
+    return new InstConfigRegistry(props);
+  }
+
+  InstConfigRegistry(Properties props) {
+    Map<String, int[]> tunings = new HashMap<>();
+    for (String key : props.stringPropertyNames()) {
+      if (key.startsWith("tuning.")) {
+        int[] openNoteVals = parseInts(props.getProperty(key), key);
+        if (openNoteVals.length < 1 || openNoteVals.length > MAX_STRINGS) {
+          throw invalid(key, "must have 1 to " + MAX_STRINGS + " strings");
+        }
+        for (int noteVal : openNoteVals) {
+          checkRange(noteVal, 0, 127, key);
+        }
+        tunings.put(key.substring("tuning.".length()), openNoteVals);
+      }
+    }
+    if (!tunings.containsKey(DEFAULT_TUNING)) {
+      throw invalid("tuning." + DEFAULT_TUNING, "is missing");
+    }
+
+    for (int program = 1; program <= NUM_PROGRAMS; program++) {
+      String key = "program." + program;
+      String value = props.getProperty(key);
+      if (value == null) {
+        throw invalid(key, "is missing");
+      }
+      String[] fields = value.split(",");
+      if (fields.length != 3) {
+        throw invalid(key, "must be name, tuning, bend|nobend");
+      }
+      String tuningName = fields[1].trim();
+      int[] openNoteVals = tunings.get(tuningName);
+      if (openNoteVals == null) {
+        throw invalid(key, "has unknown tuning " + tuningName);
+      }
+      String bend = fields[2].trim();
+      if (!bend.equals("bend") && !bend.equals("nobend")) {
+        throw invalid(key, "must end with bend or nobend");
+      }
+      _instConfigs[program] =
+        new InstConfig(program, fields[0].trim(), tuningName,
+                       openNoteVals, bend.equals("bend"));
+    }
+    _instConfigs[0] = _instConfigs[1];
+
+    _pickerIdx2midi = parseInts(props.getProperty("picker", ""), "picker");
+    if (_pickerIdx2midi.length == 0) {
+      throw invalid("picker", "is missing");
+    }
+    for (int midiInstNum : _pickerIdx2midi) {
+      checkRange(midiInstNum, 1, NUM_PROGRAMS, "picker");
+    }
+    _numPickerArtFaces = _pickerIdx2midi.length;
+    if (PICK_ALL_PROGRAMS) {
+      _pickerIdx2midi = appendMissingPrograms(_pickerIdx2midi);
+    }
+  }
+
+  /**
+   * Returns the configuration for a one based program number, or the
+   * default configuration if the number is out of range.
+   */
+  public InstConfig getInstConfigForMidi(int midiInstNum) {
+    if (midiInstNum < 1 || midiInstNum > NUM_PROGRAMS) {
+      return _instConfigs[0];
+    }
+    return _instConfigs[midiInstNum];
+  }
+
+  /**
+   * Returns the one based program number for a picker face, or 0 if
+   * there's no such face.
+   */
+  public int getMidiByPickerIdx(int pickerIdx) {
+    if (pickerIdx < 0 || pickerIdx >= _pickerIdx2midi.length) {
+      return 0;
+    }
+    return _pickerIdx2midi[pickerIdx];
+  }
+
+  public int getNumPickerFaces() {
+    return _pickerIdx2midi.length;
+  }
+
+  /**
+   * Returns the number of picker faces, from the first, that the
+   * picker's artwork has images for.  Later faces have none.
+   */
+  public int getNumPickerArtFaces() {
+    return _numPickerArtFaces;
+  }
+
+  private static int[] appendMissingPrograms(int[] programs) {
+    boolean[] included = new boolean[NUM_PROGRAMS + 1];
+    int numMissing = NUM_PROGRAMS;
+    for (int program : programs) {
+      if (!included[program]) {
+        included[program] = true;
+        numMissing--;
+      }
+    }
+    int[] allPrograms = Arrays.copyOf(programs, programs.length + numMissing);
+    int idx = programs.length;
+    for (int program = 1; program <= NUM_PROGRAMS; program++) {
+      if (!included[program]) {
+        allPrograms[idx++] = program;
+      }
+    }
+    return allPrograms;
+  }
+
+  private static int[] parseInts(String value, String key) {
+    String[] fields = value.trim().split("\\s*,\\s*");
+    if (fields.length == 1 && fields[0].isEmpty()) {
+      return new int[0];
+    }
+    int[] ints = new int[fields.length];
+    for (int idx = 0; idx < fields.length; idx++) {
+      try {
+        ints[idx] = Integer.parseInt(fields[idx]);
+      }
+      catch (NumberFormatException e) {
+        throw invalid(key, "has a bad number " + fields[idx]);
+      }
+    }
+    return ints;
+  }
+
+  private static void checkRange(int value, int min, int max, String key) {
+    if (value < min || value > max) {
+      throw invalid(key, "value " + value + " is outside " + min + " to "
+                         + max);
+    }
+  }
+
+  private static IllegalStateException invalid(String key, String problem) {
+    return new IllegalStateException(DATA_FILE + ": " + key + " " + problem);
+  }
+}
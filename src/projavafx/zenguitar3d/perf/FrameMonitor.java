@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * FrameMonitor.fx - Part of a JavaFX 3D, and touch API, example that
+ *                   uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.DepthTest;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.io.IOException;
+import java.util.function.IntSupplier;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Measures frame pacing from the interval between JavaFX pulses, and
+ * once per second reports the pulse interval percentiles, dropped
+ * frames, scene node count and running animation count.  The report can
+ * be shown in an on-screen overlay and written to a rolling log.
+ * While it runs, its pulses are also passed to a QualityGovernor.
+ *
+ * System properties:
+ *   zenguitar.perf.overlay=true  show the overlay at startup
+ *   zenguitar.perf.log=pattern   log reports through a rolling
+ *                                FileHandler, e.g. /tmp/zg-perf%g.log
+ */
+public class FrameMonitor {
+  public static boolean SHOW_OVERLAY =
+    Boolean.getBoolean("zenguitar.perf.overlay");
+  public static String LOG_PATTERN = System.getProperty("zenguitar.perf.log");
+
+  // Log files roll over at this size, keeping LOG_FILE_COUNT of them
+  private static int LOG_FILE_LIMIT = 1024 * 1024;
+  private static int LOG_FILE_COUNT = 4;
+
+  private static long REPORT_INTERVAL_NANOS = 1000000000L;
+  private static long TARGET_FRAME_NANOS = 1000000000L / 60;
+
+  private Scene _scene;
+  private IntSupplier _runningAnimations;
+  private QualityGovernor _qualityGovernor;
+  private Text _overlay;
+  private Logger _logger;
+
+  private LatencyHistogram _pulseIntervals =
+    new LatencyHistogram("pulse interval");
+  private long _lastPulse;
+  private long _lastReport;
+  private long _droppedFrames;
+  private long _totalDroppedFrames;
+  private boolean _running;
+
+  private AnimationTimer _timer = new AnimationTimer() {
+    @Override
+    public void handle(long now) {
+      pulse(now);
+    }
+  };
+
+  /**
+   * Creates a monitor for a scene, adding the (initially hidden)
+   * overlay to overlayParent.  runningAnimations supplies the number of
+   * animations currently running.
+   */
+  public FrameMonitor(Scene scene, Group overlayParent,
+                      IntSupplier runningAnimations) {
+    _scene = scene;
+    _runningAnimations = runningAnimations;
+
+    _overlay = new Text(10, 20, "");
+    _overlay.setFont(Font.font("Monospaced", 14));
+    _overlay.setFill(Color.DARKRED);
+    _overlay.setDepthTest(DepthTest.DISABLE);
+    _overlay.setMouseTransparent(true);
+    _overlay.setVisible(false);
+    overlayParent.getChildren().add(_overlay);
+
+    if (LOG_PATTERN != null) {
+      try {
+        FileHandler handler =
+          new FileHandler(LOG_PATTERN, LOG_FILE_LIMIT, LOG_FILE_COUNT, true);
+        handler.setFormatter(new SimpleFormatter());
+        _logger = Logger.getLogger(FrameMonitor.class.getName());
+        _logger.setUseParentHandlers(false);
+        _logger.addHandler(handler);
+      }
+      catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    setOverlayVisible(SHOW_OVERLAY);
+  }
+
+  public void setOverlayVisible(boolean visible) {
+    _overlay.setVisible(visible);
+    if (visible || _logger != null) {
+      start();
+    }
+    else {
+      stop();
+    }
+  }
+
+  public void setQualityGovernor(QualityGovernor qualityGovernor) {
+    _qualityGovernor = qualityGovernor;
+  }
+
+  public boolean isOverlayVisible() {
+    return _overlay.isVisible();
+  }
+
+  public void start() {
+    if (!_running) {
+      _lastPulse = 0;
+      _lastReport = System.nanoTime();
+      _timer.start();
+      _running = true;
+    }
+  }
+
+  public void stop() {
+    _timer.stop();
+    _running = false;
+    if (_qualityGovernor != null) {
+      _qualityGovernor.pause();
+    }
+  }
+
+  private void pulse(long now) {
+    if (_qualityGovernor != null) {
+      _qualityGovernor.frame(now);
+    }
+    if (_lastPulse != 0) {
+      long interval = now - _lastPulse;
+      _pulseIntervals.record(interval);
+      // A pulse arriving late by more than half a frame missed frames
+      long missed = (interval + TARGET_FRAME_NANOS / 2) / TARGET_FRAME_NANOS
+                    - 1;
+      if (missed > 0) {
+        _droppedFrames += missed;
+      }
+    }
+    _lastPulse = now;
+    if (now - _lastReport >= REPORT_INTERVAL_NANOS) {
+      report();
+      _lastReport = now;
+    }
+  }
+
+  private void report() {
+    _totalDroppedFrames += _droppedFrames;
+    String line = String.format(
+      "pulse p50=%.1f p90=%.1f p99=%.1f max=%.1f ms  "
+      + "dropped=%d (total %d)  nodes=%d  animations=%d",
+      _pulseIntervals.getPercentileNanos(50) / 1e6,
+      _pulseIntervals.getPercentileNanos(90) / 1e6,
+      _pulseIntervals.getPercentileNanos(99) / 1e6,
+      _pulseIntervals.getMaxNanos() / 1e6,
+      _droppedFrames, _totalDroppedFrames,
+      countNodes(_scene.getRoot()), _runningAnimations.getAsInt());
+    if (_overlay.isVisible()) {
+      _overlay.setText(line);
+    }
+    if (_logger != null) {
+      _logger.log(Level.INFO, line);
+    }
+    _pulseIntervals.reset();
+    _droppedFrames = 0;
+  }
+
+  static int countNodes(Node node) {
+    int count = 1;
+    if (node instanceof Parent) {
+      for (Node child : ((Parent)node).getChildrenUnmodifiable()) {
+        count += countNodes(child);
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * LatencyHistogram.fx - Part of a JavaFX 3D, and touch API, example that
+ *                       uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+/**
+ * Fixed-memory histogram of nanosecond durations.  Values are counted in
+ * log-linear buckets (16 per power of two), giving about 6% precision
+ * from 1ns up to the full range of a long, so recording never allocates
+ * and the histogram never grows.
+ *
+ * Each histogram must be recorded from a single thread.  Reading it
+ * from another thread gives a consistent enough snapshot for reporting.
+ */
+public class LatencyHistogram {
+  private static int SUB_BUCKET_BITS = 4;
+  private static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private String _name;
+  private long[] _counts = new long[NUM_BUCKETS];
+  private volatile long _totalCount;
+  private long _totalNanos;
+  private long _maxNanos;
+
+  public LatencyHistogram(String name) {
+    _name = name;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    _counts[bucketFor(nanos)]++;
+    _totalNanos += nanos;
+    if (nanos > _maxNanos) {
+      _maxNanos = nanos;
+    }
+    _totalCount++;
+  }
+
+  public long getCount() {
+    return _totalCount;
+  }
+
+  public long getMaxNanos() {
+    return _maxNanos;
+  }
+
+  public long getMeanNanos() {
+    long count = _totalCount;
+    return count == 0 ? 0 : _totalNanos / count;
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the given percentile
+   * (0 to 100), capped at the largest value recorded.
+   */
+  public long getPercentileNanos(double percentile) {
+    long count = _totalCount;
+    if (count == 0) {
+      return 0;
+    }
+    long target = (long)Math.ceil(count * percentile / 100);
+    if (target < 1) {
+      target = 1;
+    }
+    long seen = 0;
+    for (int idx = 0; idx < NUM_BUCKETS; idx++) {
+      seen += _counts[idx];
+      if (seen >= target) {
+        return Math.min(bucketUpperBound(idx), _maxNanos);
+      }
+    }
+    return _maxNanos;
+  }
+
+  public void reset() {
+    for (int idx = 0; idx < NUM_BUCKETS; idx++) {
+      _counts[idx] = 0;
+    }
+    _totalNanos = 0;
+    _maxNanos = 0;
+    _totalCount = 0;
+  }
+
+  /**
+   * One line summary in microseconds: count, mean, p50, p90, p99, p99.9
+   * and max.
+   */
+  @Override
+  public String toString() {
+    return String.format(
+      "%-18s n=%-8d mean=%9.1f p50=%9.1f p90=%9.1f p99=%9.1f "
+      + "p99.9=%9.1f max=%9.1f us",
+      _name, getCount(), getMeanNanos() / 1000.0,
+      getPercentileNanos(50) / 1000.0, getPercentileNanos(90) / 1000.0,
+      getPercentileNanos(99) / 1000.0, getPercentileNanos(99.9) / 1000.0,
+      getMaxNanos() / 1000.0);
+  }
+
+  static int bucketFor(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int)nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS))
+                    & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * LatencyTracer.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import java.io.PrintStream;
+
+/**
+ * Touch-to-sound latency tracing.  When enabled with the system property
+ * zenguitar.latency=true, each note started by a touch carries the time
+ * its TouchEvent was received, and the time elapsed since then is
+ * recorded in a histogram at each later stage:
+ *
+ *   NOTE_COMPUTED  note value computed from the touch position
+ *   ENQUEUED       note-on queued for the MIDI dispatch thread
+ *   SENT           note-on handed to the synthesizer
+ *   RENDERED       SENT plus the synthesizer's reported output latency,
+ *                  an estimate of when the first audio buffer plays
+ *
+ * The first two stages are recorded on the JavaFX Application Thread
+ * and the others on the dispatch thread, so each histogram has a single
+ * writer.
+ */
+public class LatencyTracer {
+  public static boolean ENABLED = Boolean.getBoolean("zenguitar.latency");
+
+  public static LatencyHistogram NOTE_COMPUTED =
+    new LatencyHistogram("note computed");
+  public static LatencyHistogram ENQUEUED =
+    new LatencyHistogram("enqueued");
+  public static LatencyHistogram SENT =
+    new LatencyHistogram("sent");
+  public static LatencyHistogram RENDERED =
+    new LatencyHistogram("rendered (est.)");
+
+  private static LatencyHistogram[] STAGES =
+    {NOTE_COMPUTED, ENQUEUED, SENT, RENDERED};
+
+  private static volatile long _outputLatencyNanos;
+
+  /**
+   * Returns the time a touch was received, or 0 if tracing is disabled.
+   */
+  public static long touchReceived() {
+    return ENABLED ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the time since touchTime in the stage's histogram.  Does
+   * nothing for a touchTime of 0.
+   */
+  public static void record(LatencyHistogram stage, long touchTime) {
+    if (touchTime != 0) {
+      stage.record(System.nanoTime() - touchTime);
+    }
+  }
+
+  /**
+   * Records a note-on reaching the synthesizer, along with the estimated
+   * time its audio is rendered.
+   */
+  public static void recordSent(long touchTime) {
+    if (touchTime != 0) {
+      long sentNanos = System.nanoTime() - touchTime;
+      SENT.record(sentNanos);
+      RENDERED.record(sentNanos + _outputLatencyNanos);
+    }
+  }
+
+  public static void setOutputLatencyNanos(long outputLatencyNanos) {
+    _outputLatencyNanos = outputLatencyNanos;
+  }
+
+  public static void dump(PrintStream out) {
+    out.println("Touch-to-sound latency since touch received:");
+    for (LatencyHistogram stage : STAGES) {
+      out.println("  " + stage);
+    }
+  }
+
+  public static void reset() {
+    for (LatencyHistogram stage : STAGES) {
+      stage.reset();
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * QualityGovernor.fx - Part of a JavaFX 3D, and touch API, example that
+ *                      uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Picks a rendering quality tier from measured frame times.  Tier 0 is
+ * the best quality and each higher tier is cheaper to render; what a
+ * tier changes is up to the tierChanged callback.
+ *
+ * It has no timer of its own, so it never causes pulses.  Instead the
+ * AnimationTimers already running while something animates, the
+ * StringVibrator's and the FrameMonitor's, pass their pulses to
+ * frame(), and call pause() when they stop, so an idle scene is neither
+ * timed nor kept pulsing.  Every window of a second's worth of frames
+ * the proportion that missed the budget is checked.  A window
+ * missing more than STEP_DOWN_MISSES steps down a tier at once.  The
+ * tier steps back up after enough windows in a row miss fewer than
+ * STEP_UP_MISSES.  A step down straight after a step up doubles how
+ * many are needed, so a tier that can't keep up isn't retried over and
+ * over.  Tier changes are logged.
+ *
+ * System properties:
+ *   zenguitar.quality=n        pin the tier, rather than choosing it
+ *                              from frame times (auto, the default).
+ *                              Anything else is warned about and
+ *                              treated as auto
+ *   zenguitar.quality.fps=n    frame rate to keep up, default 60
+ */
+public class QualityGovernor {
+  public static String QUALITY = System.getProperty("zenguitar.quality",
+                                                    "auto");
+  public static int TARGET_FPS = Integer.getInteger("zenguitar.quality.fps",
+                                                    60);
+
+  // Proportions of a window's frames missing the budget
+  static double STEP_DOWN_MISSES = 0.1;
+  static double STEP_UP_MISSES = 0.01;
+
+  // Good windows needed before stepping up, doubling each time a step
+  // up has to be undone, up to the maximum
+  static int MIN_STEP_UP_WINDOWS = 5;
+  static int MAX_STEP_UP_WINDOWS = 80;
+
+  private static Logger _logger =
+    Logger.getLogger(QualityGovernor.class.getName());
+
+  private int _numTiers;
+  private IntConsumer _tierChanged;
+  private long _frameBudgetNanos;
+  private boolean _pinned;
+  private int _tier;
+
+  private long _lastPulse;
+  private long _windowFrames;
+  private long _windowMisses;
+  private int _goodWindows;
+  private int _stepUpWindows = MIN_STEP_UP_WINDOWS;
+  private boolean _steppedUp;
+  private long _numStepsDown;
+  private long _numStepsUp;
+
+  /**
+   * Creates a governor for tiers 0 to numTiers - 1, calling tierChanged
+   * with the tier to use now and whenever it changes.
+   */
+  public QualityGovernor(int numTiers, IntConsumer tierChanged) {
+    _numTiers = numTiers;
+    _tierChanged = tierChanged;
+    _frameBudgetNanos = 1000000000L / Math.max(1, TARGET_FPS);
+    if (!QUALITY.equals("auto")) {
+      try {
+        int tier = Integer.parseInt(QUALITY.trim());
+        if (tier < 0 || tier >= numTiers) {
+          throw new NumberFormatException("out of range");
+        }
+        _tier = tier;
+        _pinned = true;
+        _logger.info("Quality pinned to tier " + _tier);
+      }
+      catch (NumberFormatException e) {
+        _logger.warning("zenguitar.quality=" + QUALITY + " isn't auto or a "
+                        + "tier from 0 to " + (numTiers - 1)
+                        + ", using auto");
+      }
+    }
+    _tierChanged.accept(_tier);
+  }
+
+  /**
+   * Forgets the last pulse, so the gap until the next one isn't taken
+   * for missed frames.  Called when the animation feeding frame() stops.
+   */
+  public void pause() {
+    _lastPulse = 0;
+  }
+
+  public int getTier() {
+    return _tier;
+  }
+
+  public boolean isPinned() {
+    return _pinned;
+  }
+
+  public long getNumStepsDown() {
+    return _numStepsDown;
+  }
+
+  public long getNumStepsUp() {
+    return _numStepsUp;
+  }
+
+  /**
+   * Records a pulse at time now, in nanoseconds, and moves between
+   * tiers at the end of each window.  Timers handling the same pulse
+   * pass the same time, which is only counted once.
+   */
+  public void frame(long now) {
+    if (_pinned || now == _lastPulse) {
+      return;
+    }
+    if (_lastPulse == 0) {
+      _lastPulse = now;
+      return;
+    }
+    long interval = now - _lastPulse;
+    _lastPulse = now;
+    // A pulse late by more than half a frame missed the frames between
+    long frames = (interval + _frameBudgetNanos / 2) / _frameBudgetNanos;
+    _windowFrames += Math.max(1, frames);
+    _windowMisses += Math.max(0, frames - 1);
+    if (_windowFrames >= TARGET_FPS) {
+      endWindow();
+    }
+  }
+
+  private void endWindow() {
+    double misses = (double)_windowMisses / _windowFrames;
+    if (misses > STEP_DOWN_MISSES) {
+      _goodWindows = 0;
+      if (_tier < _numTiers - 1) {
+        if (_steppedUp) {
+          _stepUpWindows =
+            Math.min(_stepUpWindows * 2, MAX_STEP_UP_WINDOWS);
+          _steppedUp = false;
+        }
+        _numStepsDown++;
+        setTier(_tier + 1, misses);
+      }
+    }
+    else if (misses < STEP_UP_MISSES) {
+      // A tier held this long was worth stepping up to
+      if (++_goodWindows >= MIN_STEP_UP_WINDOWS) {
+        _steppedUp = false;
+      }
+      if (_goodWindows >= _stepUpWindows && _tier > 0) {
+        _goodWindows = 0;
+        _steppedUp = true;
+        _numStepsUp++;
+        setTier(_tier - 1, misses);
+      }
+    }
+    else {
+      _goodWindows = 0;
+    }
+    _windowFrames = 0;
+    _windowMisses = 0;
+  }
+
+  private void setTier(int tier, double misses) {
+    _logger.info(String.format(
+      "Quality tier %d -> %d, %.1f%% of frames missed %.1f ms",
+      _tier, tier, misses * 100, _frameBudgetNanos / 1e6));
+    _tier = tier;
+    _tierChanged.accept(tier);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * StartupTimeline.fx - Part of a JavaFX 3D, and touch API, example that
+ *                      uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records when each startup step finishes, in milliseconds since the
+ * JVM started, and on which thread.  The two milestones are the first
+ * frame being shown and the audio becoming ready.  Once both have been
+ * reached a note can be played, and the timeline is printed.
+ */
+public class StartupTimeline {
+  public static String FIRST_FRAME = "first frame";
+  public static String AUDIO_READY = "audio ready";
+  public static String FIRST_PLAYABLE_NOTE = "first playable note";
+
+  // System.nanoTime() when the JVM started
+  private static long _originNanos = System.nanoTime()
+    - (System.currentTimeMillis()
+       - ManagementFactory.getRuntimeMXBean().getStartTime()) * 1000000L;
+
+  private static List<String> _steps = new ArrayList<>();
+  private static List<Long> _stepMillis = new ArrayList<>();
+
+  private static long _firstFrameMillis = -1;
+  private static long _audioReadyMillis = -1;
+
+  public static synchronized void mark(String step) {
+    _steps.add(step + " [" + Thread.currentThread().getName() + "]");
+    _stepMillis.add((System.nanoTime() - _originNanos) / 1000000);
+  }
+
+  public static synchronized void firstFrame() {
+    mark(FIRST_FRAME);
+    _firstFrameMillis = _stepMillis.get(_stepMillis.size() - 1);
+    checkPlayable();
+  }
+
+  public static synchronized void audioReady() {
+    mark(AUDIO_READY);
+    _audioReadyMillis = _stepMillis.get(_stepMillis.size() - 1);
+    checkPlayable();
+  }
+
+  private static void checkPlayable() {
+    if (_firstFrameMillis >= 0 && _audioReadyMillis >= 0) {
+      mark(FIRST_PLAYABLE_NOTE);
+      dump(System.out);
+    }
+  }
+
+  public static synchronized void dump(PrintStream out) {
+    out.println("Startup timeline (ms since JVM start):");
+    for (int idx = 0; idx < _steps.size(); idx++) {
+      out.printf("  %6d  %s%n", _stepMillis.get(idx), _steps.get(idx));
+    }
+    out.println("  time to first frame: " + _firstFrameMillis + " ms");
+    out.println("  time to first playable note: "
+                + Math.max(_firstFrameMillis, _audioReadyMillis) + " ms");
+  }
+}
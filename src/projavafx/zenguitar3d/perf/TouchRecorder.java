@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * TouchRecorder.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import javafx.event.EventTarget;
+import javafx.geometry.Point3D;
+import javafx.scene.Node;
+import javafx.scene.input.PickResult;
+import javafx.scene.input.TouchEvent;
+import javafx.scene.input.TouchPoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records touch events to an append-only file of fixed-width records,
+ * one per event, for TouchReplayer.  Each event is written to a
+ * preallocated buffer, which is handed to a writer thread when it fills
+ * and on close, so recording costs the JavaFX Application Thread a few
+ * puts and never waits on the disk.  Buffers come from a small fixed
+ * pool, and only if the writer has fallen behind with all of them does
+ * a full buffer wait for a free one.  The file is started afresh for
+ * each session.
+ *
+ * A record is RECORD_SIZE little-endian bytes:
+ *
+ *   long   time received, System.nanoTime()
+ *   int    event set id
+ *   int    touch point id
+ *   byte   touch point state (TouchPoint.State ordinal)
+ *   byte   target id (see TouchTargets)
+ *   byte   number of touch points in the event set
+ *   byte   reserved, 0
+ *   float  scene x
+ *   float  scene y
+ *   float  picked point x, in the coordinates of the target's node
+ *   float  picked point y
+ *   float  picked point z
+ *   float  distance from the camera to the picked point
+ *
+ * The picked point is where the touch hit the 3D scene, so a replay can
+ * hand the handlers the same local coordinates whatever the camera and
+ * the neck's rotation.  It's NaN when nothing was picked.
+ *
+ * JavaFX delivers one event per touch point in an event set, so a set
+ * of n points is n consecutive records with the same event set id.
+ */
+public class TouchRecorder {
+  public static int RECORD_SIZE = 44;
+  static int BUFFER_RECORDS = 1024;
+  static int NUM_BUFFERS = 4;
+
+  private static ByteBuffer END_OF_SESSION = ByteBuffer.allocate(0);
+
+  private FileChannel _channel;
+  private ByteBuffer _buffer;
+  private TouchTargets _targets;
+  private long _recordCount;
+
+  // Buffers cycle from the recording thread through _full to the writer
+  // thread, and back through _free
+  private BlockingQueue<ByteBuffer> _free =
+    new ArrayBlockingQueue<>(NUM_BUFFERS);
+  private BlockingQueue<ByteBuffer> _full =
+    new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+  private Thread _writer;
+
+  public TouchRecorder(Path path, TouchTargets targets) throws IOException {
+    _channel = FileChannel.open(path, StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    _buffer = allocateBuffer();
+    for (int idx = 1; idx < NUM_BUFFERS; idx++) {
+      _free.add(allocateBuffer());
+    }
+    _targets = targets;
+    _writer = new Thread(() -> writeBuffers(), "Touch recorder");
+    _writer.setDaemon(true);
+    _writer.start();
+  }
+
+  private static ByteBuffer allocateBuffer() {
+    return ByteBuffer.allocateDirect(RECORD_SIZE * BUFFER_RECORDS)
+      .order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  public void record(TouchEvent te) {
+    if (_buffer.remaining() < RECORD_SIZE) {
+      flush();
+    }
+    TouchPoint tp = te.getTouchPoint();
+    int targetId = _targets.idOf(te.getTarget());
+    _buffer.putLong(System.nanoTime());
+    _buffer.putInt(te.getEventSetId());
+    _buffer.putInt(tp.getId());
+    _buffer.put((byte)tp.getState().ordinal());
+    _buffer.put((byte)targetId);
+    _buffer.put((byte)te.getTouchCount());
+    _buffer.put((byte)0);
+    _buffer.putFloat((float)tp.getSceneX());
+    _buffer.putFloat((float)tp.getSceneY());
+    putPickedPoint(tp.getPickResult(), _targets.targetFor(targetId));
+    _recordCount++;
+  }
+
+  // Puts the picked point in the coordinates of the node replayed
+  // touches will be fired at, which may be an ancestor of the one hit
+  private void putPickedPoint(PickResult pick, EventTarget target) {
+    Node node = pick != null ? pick.getIntersectedNode() : null;
+    Point3D point = pick != null ? pick.getIntersectedPoint() : null;
+    if (node != null && point != null && target instanceof Node) {
+      if (node != target) {
+        point = ((Node)target).sceneToLocal(node.localToScene(point));
+      }
+      _buffer.putFloat((float)point.getX());
+      _buffer.putFloat((float)point.getY());
+      _buffer.putFloat((float)point.getZ());
+      _buffer.putFloat((float)pick.getIntersectedDistance());
+    }
+    else {
+      for (int idx = 0; idx < 4; idx++) {
+        _buffer.putFloat(Float.NaN);
+      }
+    }
+  }
+
+  public long getRecordCount() {
+    return _recordCount;
+  }
+
+  /**
+   * Hands what's been recorded so far to the writer thread.
+   */
+  public void flush() {
+    try {
+      ByteBuffer next = _free.take();
+      _buffer.flip();
+      _full.add(_buffer);
+      _buffer = next;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      _buffer.clear();
+    }
+  }
+
+  /**
+   * Hands over the last records, then waits for the writer thread to
+   * write them and closes the file.
+   */
+  public void close() {
+    flush();
+    try {
+      _full.put(END_OF_SESSION);
+      _writer.join();
+      _channel.close();
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Runs on the writer thread until close() ends the session
+  private void writeBuffers() {
+    try {
+      ByteBuffer buffer;
+      while ((buffer = _full.take()) != END_OF_SESSION) {
+        try {
+          while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+          }
+        }
+        catch (IOException e) {
+          e.printStackTrace();
+        }
+        buffer.clear();
+        _free.add(buffer);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
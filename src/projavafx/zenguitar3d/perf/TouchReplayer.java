@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * TouchReplayer.fx - Part of a JavaFX 3D, and touch API, example that
+ *                    uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.perf;
+
+import javafx.animation.AnimationTimer;
+import javafx.event.Event;
+import javafx.event.EventTarget;
+import javafx.event.EventType;
+import javafx.geometry.Point3D;
+import javafx.scene.Node;
+import javafx.scene.input.PickResult;
+import javafx.scene.input.TouchEvent;
+import javafx.scene.input.TouchPoint;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a session recorded by TouchRecorder, firing the recorded
+ * touch events at the same targets so they go through the same
+ * handlers.  Each touch is given the point it picked when recorded, so
+ * the handlers see the same local coordinates.  The file is memory
+ * mapped, so long sessions are read in place rather than loaded.
+ * Events are fired from an AnimationTimer, at their recorded times
+ * divided by the replay speed.
+ */
+public class TouchReplayer {
+  private static TouchPoint.State[] STATES = TouchPoint.State.values();
+
+  private MappedByteBuffer _records;
+  private int _numRecords;
+  private int _nextRecord;
+  private long _firstTime;
+  private double _speed;
+  private TouchTargets _targets;
+  private long _replayedCount;
+
+  private AnimationTimer _timer = new AnimationTimer() {
+    long _startTime = -1;
+
+    @Override
+    public void handle(long now) {
+      if (_startTime < 0) {
+        _startTime = now;
+      }
+      if (!replayUntil(now - _startTime)) {
+        stop();
+      }
+    }
+  };
+
+  public TouchReplayer(Path path, TouchTargets targets, double speed)
+      throws IOException {
+    try (FileChannel channel =
+           FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size() - channel.size() % TouchRecorder.RECORD_SIZE;
+      _records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      _records.order(ByteOrder.LITTLE_ENDIAN);
+      _numRecords = (int)(size / TouchRecorder.RECORD_SIZE);
+    }
+    _targets = targets;
+    _speed = speed;
+    if (_numRecords > 0) {
+      _firstTime = _records.getLong(0);
+    }
+  }
+
+  public void start() {
+    _timer.start();
+  }
+
+  public void stop() {
+    _timer.stop();
+  }
+
+  public int getNumRecords() {
+    return _numRecords;
+  }
+
+  public long getReplayedCount() {
+    return _replayedCount;
+  }
+
+  /**
+   * Fires every event recorded up to elapsedNanos of replay time after
+   * the first.  Returns false once the whole session has been replayed.
+   */
+  public boolean replayUntil(long elapsedNanos) {
+    long until = _firstTime + (long)(elapsedNanos * _speed);
+    while (_nextRecord < _numRecords && getTime(_nextRecord) <= until) {
+      _nextRecord = replayEventSet(_nextRecord);
+    }
+    return _nextRecord < _numRecords;
+  }
+
+  // Fires the events of the set starting at a record, returning the
+  // record after the set
+  private int replayEventSet(int first) {
+    int eventSetId = getEventSetId(first);
+    int end = first + 1;
+    while (end < _numRecords && getEventSetId(end) == eventSetId) {
+      end++;
+    }
+    List<TouchPoint> touchPoints = new ArrayList<>(end - first);
+    for (int rec = first; rec < end; rec++) {
+      int pos = rec * TouchRecorder.RECORD_SIZE;
+      double x = _records.getFloat(pos + 20);
+      double y = _records.getFloat(pos + 24);
+      EventTarget target = _targets.targetFor(_records.get(pos + 17));
+      touchPoints.add(new TouchPoint(
+        _records.getInt(pos + 12), getState(rec), x, y, x, y,
+        target, getPickResult(rec, target)));
+    }
+    // Fired without a source, like the scene's own touch events, so
+    // each node along the way is given the picked point in its own
+    // coordinates
+    for (TouchPoint tp : touchPoints) {
+      EventTarget target = tp.getTarget();
+      if (target != null) {
+        Event.fireEvent(target, new TouchEvent(
+          getEventType(tp.getState()), tp, touchPoints, eventSetId,
+          false, false, false, false));
+      }
+      _replayedCount++;
+    }
+    return end;
+  }
+
+  private long getTime(int rec) {
+    return _records.getLong(rec * TouchRecorder.RECORD_SIZE);
+  }
+
+  private int getEventSetId(int rec) {
+    return _records.getInt(rec * TouchRecorder.RECORD_SIZE + 8);
+  }
+
+  private TouchPoint.State getState(int rec) {
+    return STATES[_records.get(rec * TouchRecorder.RECORD_SIZE + 16)];
+  }
+
+  // Returns the recorded pick on target, or null to have the touch
+  // point picked from its scene coordinates
+  private PickResult getPickResult(int rec, EventTarget target) {
+    int pos = rec * TouchRecorder.RECORD_SIZE;
+    double x = _records.getFloat(pos + 28);
+    if (Double.isNaN(x) || !(target instanceof Node)) {
+      return null;
+    }
+    Point3D point = new Point3D(x, _records.getFloat(pos + 32),
+                                _records.getFloat(pos + 36));
+    return new PickResult((Node)target, point, _records.getFloat(pos + 40));
+  }
+
+  /**
+   * Returns the type of touch event that reports a touch point in the
+   * given state.
+   */
+  public static EventType<TouchEvent> getEventType(TouchPoint.State state) {
+    switch (state) {
+      case PRESSED:
+        return TouchEvent.TOUCH_PRESSED;
+      case MOVED:
+        return TouchEvent.TOUCH_MOVED;
+      case STATIONARY:
+        return TouchEvent.TOUCH_STATIONARY;
+      default:
+        return TouchEvent.TOUCH_RELEASED;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * CylinderMeshBuilder.fx - Part of a JavaFX 3D, and touch API, example that
+ *                          uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Accumulates many cylinders into a single TriangleMesh, so that static
+ * geometry such as frets and fret markers is rendered and transformed
+ * as one node instead of one Cylinder node each.  The vertices, face
+ * winding and smoothing groups match those of javafx.scene.shape.Cylinder.
+ */
+class CylinderMeshBuilder {
+  static int DEFAULT_DIVISIONS = 24;
+
+  private int _divisions;
+  private float[] _cos;
+  private float[] _sin;
+  private TriangleMesh _mesh = new TriangleMesh();
+
+  CylinderMeshBuilder() {
+    this(DEFAULT_DIVISIONS);
+  }
+
+  CylinderMeshBuilder(int divisions) {
+    _divisions = divisions;
+    _cos = new float[divisions];
+    _sin = new float[divisions];
+    for (int idx = 0; idx < divisions; idx++) {
+      double angle = 2 * Math.PI * idx / divisions;
+      _cos[idx] = (float)Math.cos(angle);
+      _sin[idx] = (float)Math.sin(angle);
+    }
+    // All of the geometry uses solid materials, so one texture coordinate
+    _mesh.getTexCoords().addAll(0, 0);
+  }
+
+  /**
+   * Adds a cylinder centered at (x, y, z).  Its axis runs along Y, or
+   * along Z (as if rotated 90 degrees about the X axis) if alongZ is set.
+   */
+  void addCylinder(double x, double y, double z, double radius,
+                   double height, boolean alongZ) {
+    int base = _mesh.getPoints().size() / 3;
+    float halfHeight = (float)(height / 2);
+
+    // Top ring, bottom ring, then the two cap centers
+    for (int ring = 0; ring < 2; ring++) {
+      float ringY = ring == 0 ? halfHeight : -halfHeight;
+      for (int idx = 0; idx < _divisions; idx++) {
+        addPoint(x, y, z, (float)(radius * _sin[idx]), ringY,
+                 (float)(radius * _cos[idx]), alongZ);
+      }
+    }
+    addPoint(x, y, z, 0, halfHeight, 0, alongZ);
+    addPoint(x, y, z, 0, -halfHeight, 0, alongZ);
+
+    int top = base;
+    int bottom = base + _divisions;
+    int topCenter = base + 2 * _divisions;
+    int bottomCenter = topCenter + 1;
+    for (int idx = 0; idx < _divisions; idx++) {
+      int next = (idx + 1) % _divisions;
+      addFace(top + idx, bottom + idx, top + next, 1);
+      addFace(bottom + next, top + next, bottom + idx, 1);
+    }
+    for (int idx = 0; idx < _divisions; idx++) {
+      int next = (idx + 1) % _divisions;
+      addFace(top + idx, top + next, topCenter, 2);
+    }
+    for (int idx = 0; idx < _divisions; idx++) {
+      int next = (idx + 1) % _divisions;
+      addFace(bottom + idx, bottomCenter, bottom + next, 2);
+    }
+  }
+
+  TriangleMesh build() {
+    return _mesh;
+  }
+
+  private void addPoint(double x, double y, double z,
+                        float localX, float localY, float localZ,
+                        boolean alongZ) {
+    if (alongZ) {
+      _mesh.getPoints().addAll((float)x + localX, (float)y - localZ,
+                               (float)z + localY);
+    }
+    else {
+      _mesh.getPoints().addAll((float)x + localX, (float)y + localY,
+                               (float)z + localZ);
+    }
+  }
+
+  private void addFace(int p0, int p1, int p2, int smoothingGroup) {
+    _mesh.getFaces().addAll(p0, 0, p1, 0, p2, 0);
+    _mesh.getFaceSmoothingGroups().addAll(smoothingGroup);
+  }
+}
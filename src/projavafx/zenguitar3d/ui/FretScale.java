@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * FretScale.fx - Part of a JavaFX 3D, and touch API, example that
+ *                uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+/**
+ * The x positions of the fret lines along the strings, from 0 to the
+ * string width, shared by the strings and the fret meshes.  By default
+ * the frets follow equal temperament, each fret space being 2^(-1/12)
+ * the width of the one before it, as on a real guitar.  Setting the
+ * system property zenguitar.frets.linear=true spaces them equally.
+ */
+class FretScale {
+  static boolean LINEAR = Boolean.getBoolean("zenguitar.frets.linear");
+
+  // Positions of numFrets + 1 fret lines in ascending order
+  private double[] _fretXs;
+  private int _numSpaces;
+
+  FretScale(int numFrets, double width, boolean linear) {
+    _numSpaces = numFrets;
+    _fretXs = new double[numFrets + 1];
+    for (int idx = 0; idx <= numFrets; idx++) {
+      if (linear) {
+        _fretXs[idx] = width * idx / numFrets;
+      }
+      else {
+        // Distance from the first fret line on a scale of length 1,
+        // stretched so the last line falls at the string width
+        _fretXs[idx] = width * (1 - Math.pow(2, -idx / 12.0))
+          / (1 - Math.pow(2, -numFrets / 12.0));
+      }
+    }
+  }
+
+  int getNumSpaces() {
+    return _numSpaces;
+  }
+
+  double getFretX(int idx) {
+    return _fretXs[idx];
+  }
+
+  double getSpaceCenterX(int space) {
+    return (_fretXs[space] + _fretXs[space + 1]) / 2;
+  }
+
+  double getSpaceWidth(int space) {
+    return _fretXs[space + 1] - _fretXs[space];
+  }
+
+  /**
+   * Returns the fret space containing x, from 0 to getNumSpaces() - 1.
+   * Positions outside the strings are clamped to the first or last
+   * space.  The search always halves the range the same number of
+   * times, with the comparison only choosing the next base, so it
+   * compiles to a conditional move rather than a branch.
+   */
+  int spaceAt(double x) {
+    double[] fretXs = _fretXs;
+    int base = 0;
+    int len = _numSpaces;
+    while (len > 1) {
+      int half = len >>> 1;
+      base = fretXs[base + half] <= x ? base + half : base;
+      len -= half;
+    }
+    return base;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * FretboardLayout.fx - Part of a JavaFX 3D, and touch API, example that
+ *                      uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import projavafx.zenguitar3d.model.InstConfig;
+
+/**
+ * The string count, tuning and string height of a fretboard.  Layouts
+ * are cached by ZenGuitar3D and applied to a reused set of strings.
+ */
+class FretboardLayout {
+  private int _numStrings;
+  private int[] _openNoteVals;
+  private double _stringHeight;
+
+  FretboardLayout(InstConfig instConfig, int lowNote, double neckHeight) {
+    _numStrings = instConfig.getNumStrings();
+    _openNoteVals = new int[_numStrings];
+    for (int idx = 0; idx < _numStrings; idx++) {
+      _openNoteVals[idx] = lowNote + instConfig.getOpenNoteVal(idx);
+    }
+    _stringHeight = neckHeight / _numStrings;
+  }
+
+  /**
+   * Key identifying the layout for an instrument configuration.
+   */
+  static String keyFor(InstConfig instConfig) {
+    return instConfig.getTuningName();
+  }
+
+  int getNumStrings() {
+    return _numStrings;
+  }
+
+  int getOpenNoteValue(int stringIdx) {
+    return _openNoteVals[stringIdx];
+  }
+
+  double getStringHeight() {
+    return _stringHeight;
+  }
+}
@@ -34,8 +34,6 @@
 
 package projavafx.zenguitar3d.ui;
 
-import javafx.animation.Transition;
-import javafx.animation.TranslateTransition;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.input.TouchEvent;
 import javafx.scene.input.TouchPoint;
@@ -45,24 +43,25 @@ import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Cylinder;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
-import javafx.util.Duration;
-import org.jfugue.pattern.Pattern;
-import org.jfugue.realtime.RealTimePlayer;
 import org.jfugue.theory.Note;
+import projavafx.zenguitar3d.audio.SynthEngine;
+import projavafx.zenguitar3d.perf.LatencyTracer;
 
-import javax.sound.midi.MidiUnavailableException;
-import java.util.HashMap;
+import java.util.List;
 
 public class GuitarString3D extends Region {
-  private RealTimePlayer _player;
+  private SynthEngine _synthEngine;
+  int _stringIdx;
+  int _channel;
   double _width;
   double _height;
   int _openNoteValue;
   int _numFrets;
+  FretScale _fretScale;
   boolean _bendEnabled;
 
   Cylinder _stringCyl;
-  Cylinder[] _fretCyls;
+  Translate _stringTranslate;
   DropShadow _dropShadowStringLine;
 
   // Most recent note value played
@@ -72,13 +71,21 @@ public class GuitarString3D extends Region {
   // Y position of TouchPoint for most recent note played
   double _noteValuePosY;
 
+  // Pitch wheel value most recently sent on the string's channel
+  int _bendValue = SynthEngine.PITCH_WHEEL_CENTER;
+
   // Touchpoint IDs and corresponding note values
-  HashMap _tpNoteVals;
+  TouchNoteMap _tpNoteVals;
+
+  // Vibration state, animated by the shared StringVibrator
+  double _vibrationAmplitude;
+  long _vibrationStart;
+  double _vibrationDecaySecs;
+  StringVibrator _stringVibrator;
 
-  TranslateTransition _vibrateString;
   ZenGuitar3D _zenGuitar3D;
 
-  public GuitarString3D(int openNoteValue, int numFrets,
+  public GuitarString3D(int stringIdx, int openNoteValue, int numFrets,
                         double width, double height,
                         ZenGuitar3D zenGuitar3D) {
     _width = width;
@@ -86,44 +93,23 @@ public class GuitarString3D extends Region {
     _openNoteValue = openNoteValue;
     _numFrets = numFrets;
     _zenGuitar3D = zenGuitar3D;
-    _tpNoteVals = new HashMap();
-
-    try {
-      _player = new RealTimePlayer();
-    }
-    catch (MidiUnavailableException e) {
-      e.printStackTrace();
-    }
-
-    PhongMaterial fretMaterial =
-      new PhongMaterial(Color.rgb(222, 215, 165));
-    _fretCyls = new Cylinder[_numFrets + 1];
-    for (int idx = 0; idx < _numFrets + 1; idx++) {
-      _fretCyls[idx] = new Cylinder(3, _height);
-      _fretCyls[idx].setTranslateX(idx * (_width / _numFrets));
-      _fretCyls[idx].setTranslateY(_height / 2);
-      _fretCyls[idx].setMaterial(fretMaterial);
-    }
+    _tpNoteVals = new TouchNoteMap();
+    _stringIdx = stringIdx;
+    _synthEngine = zenGuitar3D.getSynthEngine();
+    _channel = SynthEngine.channelForString(stringIdx);
+    _stringVibrator = zenGuitar3D.getStringVibrator();
+    _fretScale = zenGuitar3D.getFretScale();
 
-    // Make one fret bar thicker to indicate it is the nut
-    _fretCyls[1].setRadius(6);
-
-    _stringCyl = new Cylinder(5, width);
+    // The frets are drawn for all strings at once by ZenGuitar3D
+    _stringCyl = new Cylinder(5, width, zenGuitar3D.getStringDivisions());
+    _stringTranslate = new Translate(_width / 2, _height / 2, -15);
     _stringCyl.getTransforms().addAll(
-      new Translate(_width / 2, _height / 2, -15),
+      _stringTranslate,
       new Rotate(90, 0, 0, 0, Rotate.Z_AXIS)
     );
     _stringCyl.setMaterial(new PhongMaterial(Color.rgb(220, 220, 220)));
 
-    _vibrateString = new TranslateTransition(new Duration(10), _stringCyl);
-    _vibrateString.setByY(2);
-    _vibrateString.setAutoReverse(true);
-    _vibrateString.setCycleCount(Transition.INDEFINITE);
-
     setPrefSize(width, height);
-    for (int idx = 0; idx < _numFrets + 1; idx++) {
-      getChildren().add(_fretCyls[idx]);
-    }
     getChildren().add(_stringCyl);
 
     setOnTouchPressed(te -> handleTouchPressed(te));
@@ -145,22 +131,45 @@ public class GuitarString3D extends Region {
     _height = height;
   }
 
+  // The Region's own bounds are what touches pick, now that the frets
+  // no longer fill the string's band
   @Override
   public void setWidth(double width) {
+    super.setWidth(width);
     _width = width;
   }
 
   @Override
   public void setHeight(double height) {
+    super.setHeight(height);
     _height = height;
   }
 
+  /**
+   * Replaces the string's cylinder with one of the given divisions, as
+   * a Cylinder's divisions can't be changed.
+   */
+  void setDivisions(int divisions) {
+    if (_stringCyl.getDivisions() != divisions) {
+      Cylinder stringCyl =
+        new Cylinder(_stringCyl.getRadius(), _stringCyl.getHeight(),
+                     divisions);
+      stringCyl.getTransforms().setAll(_stringCyl.getTransforms());
+      stringCyl.setTranslateY(_stringCyl.getTranslateY());
+      stringCyl.setMaterial(_stringCyl.getMaterial());
+      getChildren().set(getChildren().indexOf(_stringCyl), stringCyl);
+      _stringCyl = stringCyl;
+    }
+  }
+
   void handleTouchPressed(TouchEvent te) {
+    long touchTime = LatencyTracer.touchReceived();
     if (!_zenGuitar3D.isMuteMode()) {
       if (isHighestTouchOnString(te)) {
         releaseAll(te);
-        play(computeNoteValue(te.getTouchPoint().getX()), te.getTouchPoint(), false);
-        _vibrateString.play();
+        int noteValue = computeNoteValue(te.getTouchPoint().getX());
+        LatencyTracer.record(LatencyTracer.NOTE_COMPUTED, touchTime);
+        play(noteValue, te.getTouchPoint(), false, touchTime);
       }
     }
     if (te.getTouchCount() >= 5) {
@@ -177,33 +186,37 @@ public class GuitarString3D extends Region {
 
   void handleTouchReleased(TouchEvent te) {
     release(te.getTouchPoint());
-    _vibrateString.pause();
   }
 
   void handleTouchMoved(TouchEvent te) {
+    long touchTime = LatencyTracer.touchReceived();
     if (isHighestTouchOnString(te)) {
       int noteValue = computeNoteValue(te.getTouchPoint().getX());
       if (noteValue != _noteValue) {
+        LatencyTracer.record(LatencyTracer.NOTE_COMPUTED, touchTime);
         release(te.getTouchPoint());
-        play(computeNoteValue(
-             te.getTouchPoint().getX()), te.getTouchPoint(), true);
+        play(noteValue, te.getTouchPoint(), true, touchTime);
       }
       else {
         double bendDist =
           Math.abs((te.getTouchPoint().getY() - _noteValuePosY));
         double bendPct = bendDist / _height;
         if (_bendEnabled && bendPct > .25) {
-          byte msb = (byte)Math.min(64 * (bendPct - .25), 64);
-          _player.changePitchWheel((byte)0, msb);
+          int center = SynthEngine.PITCH_WHEEL_CENTER;
+          bend(center + (int)Math.min(center * (bendPct - .25),
+                                      SynthEngine.PITCH_WHEEL_MAX - center));
         }
       }
     }
   }
 
+  // Touch point lists are walked by index to avoid allocating iterators
   boolean isHighestTouchOnString(TouchEvent te) {
     double pointX = te.getTouchPoint().getX();
     double maxX = 0.0;
-    for (TouchPoint tp : te.getTouchPoints()) {
+    List<TouchPoint> touchPoints = te.getTouchPoints();
+    for (int idx = 0; idx < touchPoints.size(); idx++) {
+      TouchPoint tp = touchPoints.get(idx);
       if (tp.belongsTo(this)) {
         maxX = Math.max(tp.getX(), maxX);
       }
@@ -213,8 +226,9 @@ public class GuitarString3D extends Region {
 
   int numTouchPointsOnString(TouchEvent te) {
     int numTouchPoints = 0;
-    for (TouchPoint tp : te.getTouchPoints()) {
-      if (tp.belongsTo(this)) {
+    List<TouchPoint> touchPoints = te.getTouchPoints();
+    for (int idx = 0; idx < touchPoints.size(); idx++) {
+      if (touchPoints.get(idx).belongsTo(this)) {
         numTouchPoints++;
       }
     }
@@ -222,49 +236,83 @@ public class GuitarString3D extends Region {
   }
 
   int computeNoteValue(double stringPosX) {
-    //TODO: Change to logarithmic scale?
-    double noteWidth = _width / _numFrets;
-    double noteValue = stringPosX / noteWidth;
-    int intNoteValue = new Double(noteValue).intValue() + 2;
-    return _openNoteValue + intNoteValue;
+    return _openNoteValue + _fretScale.spaceAt(stringPosX) + 2;
   }
 
   private void play(int noteValue, TouchPoint tp,
-                    boolean softAttack) {
-    _tpNoteVals.put(tp.getId(),
-                    new Integer(noteValue));
+                    boolean softAttack, long touchTime) {
+    // A note displaced from the map would otherwise never be stopped
+    int replaced = _tpNoteVals.put(tp.getId(), noteValue, -1);
+    if (replaced >= 0) {
+      _synthEngine.noteOff(_channel, replaced);
+    }
     _noteValue = noteValue;
     _noteValuePosY = tp.getY();
-    Note note = new Note(noteValue);
+    int velocity = Note.DEFAULT_ATTACK_VELOCITY;
     if (softAttack) {
-      note.setAttackVelocity((byte)(note.getAttackVelocity() * 0.75));
+      velocity = (int)(velocity * 0.75);
     }
-    Pattern pattern = note.getPattern();
-    _player.play(pattern + "s-");
+    _synthEngine.noteOn(_channel, noteValue, velocity, touchTime);
+    _stringVibrator.pluck(this, velocity);
   }
 
   private void release(TouchPoint tp) {
-    _vibrateString.pause();
-    _player.changePitchWheel((byte)0, (byte)0);
-    int noteValue = 0;
-    Object nv = _tpNoteVals.get(tp.getId());
-    if (nv != null) {
-      noteValue = ((Integer)nv).intValue();
+    _stringVibrator.damp(this);
+    bend(SynthEngine.PITCH_WHEEL_CENTER);
+    int noteValue = _tpNoteVals.get(tp.getId(), -1);
+    if (noteValue >= 0) {
+      _tpNoteVals.remove(tp.getId());
+      _synthEngine.noteOff(_channel, noteValue);
+    }
+  }
+
+  // Touch events often repeat the same bend, which needn't be resent
+  private void bend(int value) {
+    if (value != _bendValue) {
+      _bendValue = value;
+      _synthEngine.changePitchWheel(_channel, value);
     }
-    Pattern pattern = new Note(noteValue).getPattern();
-    _player.play(pattern + "-s");
   }
 
   private void releaseAll(TouchEvent te) {
-    for (TouchPoint tp : te.getTouchPoints()) {
+    List<TouchPoint> touchPoints = te.getTouchPoints();
+    for (int idx = 0; idx < touchPoints.size(); idx++) {
+      TouchPoint tp = touchPoints.get(idx);
       if (tp.belongsTo(this)) {
         release(tp);
       }
     }
   }
 
+  /**
+   * Retunes and resizes the string so it can be reused in another
+   * fretboard layout, stopping any notes it is playing.
+   */
+  void configure(int openNoteValue, double height) {
+    silence();
+    _openNoteValue = openNoteValue;
+    setPrefSize(_width, height);
+    _stringTranslate.setY(height / 2);
+  }
+
+  /**
+   * Stops every note the string is playing.
+   */
+  void silence() {
+    int noteValue;
+    while ((noteValue = _tpNoteVals.removeAny(-1)) >= 0) {
+      _synthEngine.noteOff(_channel, noteValue);
+    }
+    bend(SynthEngine.PITCH_WHEEL_CENTER);
+    _stringVibrator.damp(this);
+  }
+
   public void setInstrument(int oneBasedInstNum) {
-    _player.changeInstrument(oneBasedInstNum - 1);
+    _synthEngine.changeInstrument(_channel, oneBasedInstNum - 1);
+  }
+
+  public int getStringIdx() {
+    return _stringIdx;
   }
 
   public void setBendEnabled(boolean bendEnabled) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * InstrumentTiles.fx - Part of a JavaFX 3D, and touch API, example that
+ *                      uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import projavafx.cylinderpicker.FaceTileProvider;
+import projavafx.zenguitar3d.model.InstConfig;
+import projavafx.zenguitar3d.model.Inst2MidiLookup;
+
+/**
+ * The instrument picker's faces.  Faces the artwork has an image for
+ * are cut from it, and the rest, or all of them if the artwork isn't
+ * loaded, show the instrument's number and name, drawn when they're
+ * first needed.
+ */
+class InstrumentTiles implements FaceTileProvider {
+  private Image _artwork;
+  private int _numArtFaces;
+
+  InstrumentTiles(Image artwork) {
+    _artwork = artwork;
+    _numArtFaces = Inst2MidiLookup.getNumPickerArtFaces();
+  }
+
+  @Override
+  public int getNumFaces() {
+    return Inst2MidiLookup.getNumPickerFaces();
+  }
+
+  @Override
+  public Image loadTile(int face, int width, int height) {
+    if (face < _numArtFaces && _artwork != null &&
+        _artwork.getPixelReader() != null) {
+      int artWidth = (int)_artwork.getWidth() / _numArtFaces;
+      return new WritableImage(_artwork.getPixelReader(),
+                               face * artWidth, 0,
+                               artWidth, (int)_artwork.getHeight());
+    }
+    return drawLabel(Inst2MidiLookup.getMidiByPickerIdx(face), width, height);
+  }
+
+  private Image drawLabel(int midiInstNum, int width, int height) {
+    Canvas canvas = new Canvas(width, height);
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.setFill(Color.BLACK);
+    gc.fillRect(0, 0, width, height);
+
+    // A word to a line, under the program number
+    String[] words =
+      InstConfig.getInstConfigForMidi(midiInstNum).getName().split(" ");
+    double lineHeight = height / (words.length + 2.0);
+    gc.setFont(Font.font(lineHeight * 0.8));
+    gc.setFill(Color.WHITE);
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setTextBaseline(VPos.CENTER);
+    gc.fillText(Integer.toString(midiInstNum), width / 2.0, lineHeight,
+                width - 4);
+    for (int idx = 0; idx < words.length; idx++) {
+      gc.fillText(words[idx], width / 2.0, lineHeight * (idx + 2),
+                  width - 4);
+    }
+    return canvas.snapshot(null, new WritableImage(width, height));
+  }
+}
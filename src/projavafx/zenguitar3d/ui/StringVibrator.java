@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * StringVibrator.fx - Part of a JavaFX 3D, and touch API, example that
+ *                     uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+import javafx.animation.AnimationTimer;
+import projavafx.zenguitar3d.perf.QualityGovernor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Animates every vibrating string from a single AnimationTimer.  A
+ * plucked string is blurred with an amplitude proportional to the note
+ * velocity, decaying exponentially while it rings and much faster once
+ * it's released.  Real strings vibrate far faster than frames are
+ * drawn, so rather than sampling a waveform, which would alias to a
+ * slow wobble, each frame displaces the string by a random fraction of
+ * the amplitude.  That reads as a blur at any frame rate.  The timer only runs while some string is vibrating,
+ * so an idle fretboard schedules no pulses.
+ *
+ * To save rendering, released strings can be stilled at once rather
+ * than left to die away.  Its pulses, which come while strings are
+ * being drawn moving, are what a QualityGovernor times.
+ */
+class StringVibrator {
+  // Amplitude in pixels of a string plucked at full velocity
+  static double MAX_AMPLITUDE = 4;
+
+  // Time constants of the amplitude decay while ringing and once damped
+  static double RING_DECAY_SECS = 1.5;
+  static double DAMPED_DECAY_SECS = 0.05;
+
+  // Amplitude below which a string is considered still
+  static double MIN_AMPLITUDE = 0.05;
+
+  private List<GuitarString3D> _vibrating = new ArrayList<>();
+  private boolean _running;
+  private boolean _vibrateReleased = true;
+  private QualityGovernor _qualityGovernor;
+
+  // State of the xorshift generator for the displacement of each frame
+  private long _jitterSeed = 0x9E3779B97F4A7C15L;
+
+  private AnimationTimer _timer = new AnimationTimer() {
+    @Override
+    public void handle(long now) {
+      update(now);
+    }
+  };
+
+  void pluck(GuitarString3D guitarString, int velocity) {
+    guitarString._vibrationAmplitude = MAX_AMPLITUDE * velocity / 127;
+    guitarString._vibrationStart = System.nanoTime();
+    guitarString._vibrationDecaySecs = RING_DECAY_SECS;
+    if (!_vibrating.contains(guitarString)) {
+      _vibrating.add(guitarString);
+    }
+    if (!_running) {
+      _running = true;
+      startTimer();
+    }
+  }
+
+  /**
+   * Damps a string so that its vibration dies away quickly.
+   */
+  void damp(GuitarString3D guitarString) {
+    if (!_vibrateReleased) {
+      if (_vibrating.remove(guitarString)) {
+        guitarString._stringCyl.setTranslateY(0);
+      }
+    }
+    else if (_vibrating.contains(guitarString)
+        && guitarString._vibrationDecaySecs != DAMPED_DECAY_SECS) {
+      long now = System.nanoTime();
+      guitarString._vibrationAmplitude = amplitudeAt(guitarString, now);
+      guitarString._vibrationStart = now;
+      guitarString._vibrationDecaySecs = DAMPED_DECAY_SECS;
+    }
+  }
+
+  void setQualityGovernor(QualityGovernor qualityGovernor) {
+    _qualityGovernor = qualityGovernor;
+  }
+
+  void setVibrateReleased(boolean vibrateReleased) {
+    _vibrateReleased = vibrateReleased;
+  }
+
+  boolean isRunning() {
+    return _running;
+  }
+
+  int getNumVibrating() {
+    return _vibrating.size();
+  }
+
+  void startTimer() {
+    _timer.start();
+  }
+
+  void stopTimer() {
+    _timer.stop();
+  }
+
+  private void update(long now) {
+    if (_qualityGovernor != null) {
+      _qualityGovernor.frame(now);
+    }
+    for (int idx = _vibrating.size() - 1; idx >= 0; idx--) {
+      GuitarString3D guitarString = _vibrating.get(idx);
+      double amplitude = amplitudeAt(guitarString, now);
+      if (amplitude < MIN_AMPLITUDE) {
+        guitarString._stringCyl.setTranslateY(0);
+        _vibrating.remove(idx);
+      }
+      else {
+        guitarString._stringCyl.setTranslateY(amplitude * nextJitter());
+      }
+    }
+    if (_vibrating.isEmpty()) {
+      _running = false;
+      stopTimer();
+      if (_qualityGovernor != null) {
+        _qualityGovernor.pause();
+      }
+    }
+  }
+
+  // Returns a pseudo-random value from -1 up to 1, without allocating
+  private double nextJitter() {
+    _jitterSeed ^= _jitterSeed << 13;
+    _jitterSeed ^= _jitterSeed >>> 7;
+    _jitterSeed ^= _jitterSeed << 17;
+    return (_jitterSeed >>> 11) * 0x1.0p-52 - 1;
+  }
+
+  private static double amplitudeAt(GuitarString3D guitarString, long now) {
+    double secs = (now - guitarString._vibrationStart) / 1e9;
+    return guitarString._vibrationAmplitude
+           * Math.exp(-secs / guitarString._vibrationDecaySecs);
+  }
+}
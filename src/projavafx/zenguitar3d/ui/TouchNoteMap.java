@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013, Pro JavaFX Authors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of JFXtras nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * TouchNoteMap.fx - Part of a JavaFX 3D, and touch API, example that
+ *                   uses David Koelle's JFugue5 library http://jfugue.org
+ *
+ *  Developed 2013 by James L. Weaver jim.weaver [at] javafxpert.com
+ *  as a JavaFX 8 example for the Pro JavaFX 8 book.
+ */
+
+package projavafx.zenguitar3d.ui;
+
+/**
+ * Maps touch point IDs to the note values they are playing, using
+ * primitive arrays sized for the maximum number of simultaneous touches
+ * so that lookups and updates never allocate.
+ */
+class TouchNoteMap {
+  static int MAX_TOUCHES = 16;
+
+  private static int NO_ID = Integer.MIN_VALUE;
+
+  private int[] _ids = new int[MAX_TOUCHES];
+  private int[] _noteVals = new int[MAX_TOUCHES];
+
+  // Slot to reuse when all slots are taken by touches never released
+  private int _nextEvict;
+
+  TouchNoteMap() {
+    clear();
+  }
+
+  /**
+   * Maps a touch ID to a note value.  Returns the note value this
+   * replaces, either the touch's previous one or one evicted to make
+   * room, or defaultValue if none was.
+   */
+  int put(int id, int noteValue, int defaultValue) {
+    int replaced = defaultValue;
+    int slot = indexOf(id);
+    if (slot < 0) {
+      slot = indexOf(NO_ID);
+    }
+    if (slot < 0) {
+      slot = _nextEvict;
+      _nextEvict = (_nextEvict + 1) % MAX_TOUCHES;
+    }
+    if (_ids[slot] != NO_ID) {
+      replaced = _noteVals[slot];
+    }
+    _ids[slot] = id;
+    _noteVals[slot] = noteValue;
+    return replaced;
+  }
+
+  /**
+   * Returns the note value for a touch ID, or defaultValue if the touch
+   * isn't playing a note.
+   */
+  int get(int id, int defaultValue) {
+    int slot = indexOf(id);
+    return slot < 0 ? defaultValue : _noteVals[slot];
+  }
+
+  void remove(int id) {
+    int slot = indexOf(id);
+    if (slot >= 0) {
+      _ids[slot] = NO_ID;
+    }
+  }
+
+  /**
+   * Removes any one entry and returns its note value, or returns
+   * defaultValue if the map is empty.
+   */
+  int removeAny(int defaultValue) {
+    for (int idx = 0; idx < MAX_TOUCHES; idx++) {
+      if (_ids[idx] != NO_ID) {
+        _ids[idx] = NO_ID;
+        return _noteVals[idx];
+      }
+    }
+    return defaultValue;
+  }
+
+  void clear() {
+    for (int idx = 0; idx < MAX_TOUCHES; idx++) {
+      _ids[idx] = NO_ID;
+    }
+  }
+
+  private int indexOf(int id) {
+    for (int idx = 0; idx < MAX_TOUCHES; idx++) {
+      if (_ids[idx] == id) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+}
@@ -38,22 +38,64 @@ import javafx.animation.*;
 import javafx.application.Application;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.event.EventTarget;
 import javafx.scene.*;
 import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.TouchEvent;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
-import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.MeshView;
 import javafx.scene.transform.Rotate;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import projavafx.cylinderpicker.CylinderPicker;
+import projavafx.zenguitar3d.audio.SynthEngine;
 import projavafx.zenguitar3d.model.Inst2MidiLookup;
 import projavafx.zenguitar3d.model.InstConfig;
+import projavafx.zenguitar3d.model.InstConfigRegistry;
+import projavafx.zenguitar3d.perf.FrameMonitor;
+import projavafx.zenguitar3d.perf.LatencyTracer;
+import projavafx.zenguitar3d.perf.QualityGovernor;
+import projavafx.zenguitar3d.perf.StartupTimeline;
+import projavafx.zenguitar3d.perf.TouchRecorder;
+import projavafx.zenguitar3d.perf.TouchReplayer;
+import projavafx.zenguitar3d.perf.TouchTargets;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class ZenGuitar3D extends Application {
   static int INITIAL_INST_PICKER_FACE = 14;
+
+  // Faces around the instrument picker, which scroll through all of
+  // its instruments when there are more
+  static int PICKER_SLOTS = 20;
+
+  // Faces either side of the browsed one whose instruments are prefetched
+  static int PREFETCH_FACE_RADIUS = 2;
+
+  // Time the picker must rest on an instrument before the fretboard is
+  // switched to it, set with the system property zenguitar.picker.settle
+  static long PICKER_SETTLE_MILLIS =
+    Long.getLong("zenguitar.picker.settle", 300);
+
+  // Setting zenguitar.picker.audition=true plays a note in each
+  // instrument the picker turns to, on the channel of the last string
+  // allowed, which is free unless an instrument has that many strings
+  static boolean PICKER_AUDITION =
+    Boolean.getBoolean("zenguitar.picker.audition");
+  static int AUDITION_NOTE = 60;
+  static int AUDITION_CHANNEL =
+    SynthEngine.channelForString(InstConfigRegistry.MAX_STRINGS - 1);
   static double NECK_HEIGHT = 1000;
 
   static int LOW_NOTE = 18;
@@ -62,13 +104,33 @@ public class ZenGuitar3D extends Application {
   static double NECK_DEPTH = 100;
   static double GUITAR_INITIAL_Z = 40;
 
+  // Rendering quality tiers, best first, chosen by the QualityGovernor:
+  // cylinder divisions of the frets and markers and of the strings,
+  // whether the neck is textured, and whether released strings keep
+  // vibrating
+  static int[] MESH_DIVISIONS = {24, 12, 12, 6};
+  static int[] STRING_DIVISIONS = {64, 16, 16, 8};
+  static boolean[] TEXTURED_NECK = {true, true, false, false};
+  static boolean[] VIBRATE_RELEASED = {true, true, true, false};
+
+  // Neck color when it isn't textured
+  static Color WOOD_COLOR = Color.rgb(160, 110, 60);
+
   static int _numStrings;
   static double _stringHeight;
   boolean _muteMode = false;
   double _curZoomFactor = 1.0;
   Group _guitar;
   Box _neck;
+  PhongMaterial _woodMaterial = new PhongMaterial();
+  Image _woodImage;
   PhongMaterial _markerMaterial;
+  QualityGovernor _qualityGovernor;
+  int _quality;
+
+  // Frets and fret markers for all strings, each batched into one mesh
+  MeshView _frets;
+  MeshView _fretMarkers;
 
   DoubleProperty _guitarAngleX = new SimpleDoubleProperty(0);
   DoubleProperty _guitarAngleY = new SimpleDoubleProperty(0);
@@ -79,33 +141,113 @@ public class ZenGuitar3D extends Application {
   Rotate _guitarRotateZ;
 
   Timeline _goHomeAnim;
+
+  // The picker and its transitions are created when first shown
+  Image _midiPickerImage;
   CylinderPicker _midiPicker;
+  boolean _auditioning;
   TranslateTransition _showMidiPicker;
   TranslateTransition _hideMidiPicker;
   SequentialTransition _showHideMidiPicker;
 
   VBox _guitarStringsContainer;
 
+  // Strings by index, created as needed and reused by every layout
+  List<GuitarString3D> _guitarStrings = new ArrayList<>();
+
+  // Fretboard layouts by string count and tuning, and the one showing
+  Map<String, FretboardLayout> _fretboardLayouts = new HashMap<>();
+  FretboardLayout _curFretboardLayout;
+
+  // One synthesizer shared by all strings, with a MIDI channel per string
+  SynthEngine _synthEngine;
+
+  FrameMonitor _frameMonitor;
+
+  // Touch session recording and replay, see startTouchSession()
+  TouchRecorder _touchRecorder;
+  TouchReplayer _touchReplayer;
+  TouchTargets _touchTargets = new TouchTargets() {
+    @Override
+    public int idOf(EventTarget target) {
+      Node node = target instanceof Node ? (Node)target : null;
+      for (; node != null; node = node.getParent()) {
+        if (node instanceof GuitarString3D) {
+          return ((GuitarString3D)node).getStringIdx();
+        }
+        if (node instanceof CylinderPicker) {
+          return PICKER;
+        }
+      }
+      return OTHER;
+    }
+
+    @Override
+    public EventTarget targetFor(int id) {
+      if (id == PICKER) {
+        return _midiPicker != null ? _midiPicker.getCylinder() : null;
+      }
+      if (id >= 0) {
+        return id < _numStrings ? _guitarStrings.get(id) : null;
+      }
+      return _guitar;
+    }
+  };
+
+  // Animates all of the vibrating strings
+  StringVibrator _stringVibrator = new StringVibrator();
+
+  // Fret positions, used both to draw the frets and to find the note
+  // touched on a string
+  FretScale _fretScale =
+    new FretScale(NUM_FRETS, STRING_WIDTH, FretScale.LINEAR);
+
   PerspectiveCamera scenePerspectiveCamera =
     new PerspectiveCamera(false);
 
   public static void main(String[] args) {
+    StartupTimeline.mark("launch");
     System.setProperty("prism.dirtyopts", "false");
     Application.launch(args);
   }
 
   @Override
   public void start(Stage stage) {
+    StartupTimeline.mark("start");
+
+    // The synthesizer and images load in the background while the
+    // scene is built.  Strings can be touched straight away, but play
+    // nothing until the synthesizer is open.
+    _synthEngine = new SynthEngine();
+    Thread synthStartup = new Thread(() -> {
+      _synthEngine.open();
+      if (!_synthEngine.isOpen()) {
+        StartupTimeline.mark("synthesizer unavailable");
+      }
+      StartupTimeline.audioReady();
+      prefetchInstrumentsNear(INITIAL_INST_PICKER_FACE);
+    }, "Synth startup");
+    synthStartup.setDaemon(true);
+    synthStartup.start();
+
     Image zgDiffuseMap =
         new Image(ZenGuitar3D.class
             .getResource("wood.jpeg")
-            .toExternalForm());
+            .toExternalForm(), true);
 
-    PhongMaterial woodMaterial = new PhongMaterial();
-    woodMaterial.setDiffuseMap(zgDiffuseMap);
+    _midiPickerImage =
+      new Image(ZenGuitar3D.class
+        .getResource("20-instruments-w-pipa.png")
+        .toExternalForm(), true);
+
+    whenImageLoaded(zgDiffuseMap, image -> {
+      StartupTimeline.mark("wood texture loaded");
+      _woodImage = image;
+      applyNeckMaterial();
+    });
 
     _neck = new Box(STRING_WIDTH, NECK_HEIGHT, NECK_DEPTH);
-    _neck.setMaterial(woodMaterial);
+    _neck.setMaterial(_woodMaterial);
     _neck.setTranslateZ(NECK_DEPTH / 2);
 
     final Group root = new Group();
@@ -157,57 +299,12 @@ public class ZenGuitar3D extends Application {
     createFretboard(Inst2MidiLookup
       .getMidiByPickerIdx(INITIAL_INST_PICKER_FACE));
 
-    Image cpDiffuseMap =
-      new Image(ZenGuitar3D.class
-        .getResource("20-instruments-w-pipa.png")
-        .toExternalForm());
-
-    _midiPicker = new CylinderPicker(
-      300, 300, 20,
-      INITIAL_INST_PICKER_FACE,
-      cpDiffuseMap
-    );
-    _midiPicker.setTranslateZ(400);
-    _midiPicker.setOnItemPicked((int ip) -> {
-      int midiInstNum = Inst2MidiLookup.getMidiByPickerIdx(ip);
-      setStringsToInstrument(midiInstNum);
-    });
-    _midiPicker.setOnDismissRequested(dismissType -> {
-      _hideMidiPicker.play();
-    });
-
-    _showMidiPicker =
-      new TranslateTransition(
-        new Duration(2000),
-        _midiPicker
-      );
-    _showMidiPicker.setFromZ(400);
-    _showMidiPicker.setToZ(-100);
-
-    _hideMidiPicker =
-      new TranslateTransition(
-        new Duration(1000),
-        _midiPicker
-      );
-    _hideMidiPicker.setFromZ(-100);
-    _hideMidiPicker.setToZ(400);
-
-    _showHideMidiPicker = new SequentialTransition();
+    _frets = createFrets(_markerMaterial);
+    _fretMarkers = createFretMarkers(_markerMaterial);
 
     _guitar.getChildren()
       .setAll(
-          _neck, _guitarStringsContainer,
-          createFretMarker(0, _markerMaterial),
-          createFretMarker(1, _markerMaterial),
-          createFretMarker(2, _markerMaterial),
-          createFretMarker(3, _markerMaterial),
-          createFretMarker(4, _markerMaterial),
-          createFretMarker(5, _markerMaterial),
-          createFretMarker(6, _markerMaterial),
-          createFretMarker(7, _markerMaterial),
-          createFretMarker(8, _markerMaterial),
-          createFretMarker(9, _markerMaterial),
-          _midiPicker
+          _neck, _frets, _fretMarkers, _guitarStringsContainer
       );
 
     _guitar.setOnZoomStarted(e -> {
@@ -246,6 +343,17 @@ public class ZenGuitar3D extends Application {
       new Scene(root, STRING_WIDTH, NECK_HEIGHT, true);
     scene.setFill(Color.WHITE);
 
+    // L dumps the touch-to-sound latency histograms, P toggles the
+    // performance overlay
+    scene.setOnKeyPressed(ke -> {
+      if (ke.getCode() == KeyCode.L && LatencyTracer.ENABLED) {
+        LatencyTracer.dump(System.out);
+      }
+      else if (ke.getCode() == KeyCode.P) {
+        _frameMonitor.setOverlayVisible(!_frameMonitor.isOverlayVisible());
+      }
+    });
+
     PointLight pointLight = new PointLight(Color.WHITE);
     pointLight.setTranslateX(STRING_WIDTH * .33);
     pointLight.setTranslateY(NECK_HEIGHT * .33);
@@ -255,14 +363,213 @@ public class ZenGuitar3D extends Application {
 
     root.getChildren().addAll(pointLight, scenePerspectiveCamera);
 
+    _frameMonitor =
+      new FrameMonitor(scene, root, () -> countRunningAnimations());
+
+    // Times only the pulses of animations already running
+    _qualityGovernor =
+      new QualityGovernor(MESH_DIVISIONS.length, tier -> applyQuality(tier));
+    _stringVibrator.setQualityGovernor(_qualityGovernor);
+    _frameMonitor.setQualityGovernor(_qualityGovernor);
+
+    // The first pulse renders the first frame, so it has been shown by
+    // the time of the second
+    new AnimationTimer() {
+      int _numPulses;
+
+      @Override
+      public void handle(long now) {
+        if (++_numPulses == 2) {
+          StartupTimeline.firstFrame();
+          stop();
+        }
+      }
+    }.start();
+
     stage.setScene(scene);
     stage.setTitle("ZenGuitar3D");
     stage.show();
+    StartupTimeline.mark("stage shown");
+
+    startTouchSession(scene);
+
+    whenImageLoaded(_midiPickerImage, image -> {
+      StartupTimeline.mark("picker texture loaded");
+      showMidiPicker(true);
+    });
+  }
+
+  /**
+   * Records every touch in the scene if the system property
+   * zenguitar.touch.record names a file, and replays the session
+   * recorded in the file named by zenguitar.touch.replay.  The property
+   * zenguitar.touch.replay.speed sets the replay speed (default 1).
+   */
+  void startTouchSession(Scene scene) {
+    try {
+      String recordPath = System.getProperty("zenguitar.touch.record");
+      if (recordPath != null) {
+        _touchRecorder = new TouchRecorder(Paths.get(recordPath),
+                                           _touchTargets);
+        scene.addEventFilter(TouchEvent.ANY, te -> _touchRecorder.record(te));
+      }
+      String replayPath = System.getProperty("zenguitar.touch.replay");
+      if (replayPath != null) {
+        double speed = Double.parseDouble(
+          System.getProperty("zenguitar.touch.replay.speed", "1"));
+        _touchReplayer = new TouchReplayer(Paths.get(replayPath),
+                                           _touchTargets, speed);
+        _touchReplayer.start();
+      }
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Runs action on the JavaFX Application Thread once an image that is
+   * loading in the background has finished.
+   */
+  static void whenImageLoaded(Image image, Consumer<Image> action) {
+    if (image.getProgress() >= 1) {
+      action.accept(image);
+    }
+    else {
+      image.progressProperty().addListener((ov, oldValue, newValue) -> {
+        if (newValue.doubleValue() >= 1) {
+          action.accept(image);
+        }
+      });
+    }
+  }
 
-    showMidiPicker(true);
+  @Override
+  public void stop() {
+    if (Boolean.getBoolean("zenguitar.midi.stats")) {
+      if (_synthEngine.getDispatcher() != null) {
+        System.out.println(_synthEngine.getDispatcher());
+      }
+      System.out.println(_synthEngine.getVoiceManager());
+      if (_midiPicker != null) {
+        System.out.println("Picker: face changes=" +
+                           _midiPicker.getNumFaceChanges() + ", picks=" +
+                           _midiPicker.getNumPicks() + ", avoided=" +
+                           _midiPicker.getNumPicksAvoided());
+      }
+      if (_synthEngine.getAudioOutput() != null) {
+        System.out.println(_synthEngine.getAudioOutput());
+      }
+    }
+    if (LatencyTracer.ENABLED) {
+      LatencyTracer.dump(System.out);
+    }
+    if (_touchRecorder != null) {
+      _touchRecorder.close();
+    }
+    _synthEngine.close();
+  }
+
+  SynthEngine getSynthEngine() {
+    return _synthEngine;
+  }
+
+  StringVibrator getStringVibrator() {
+    return _stringVibrator;
+  }
+
+  FretScale getFretScale() {
+    return _fretScale;
+  }
+
+  int getStringDivisions() {
+    return STRING_DIVISIONS[_quality];
+  }
+
+  /**
+   * Renders at a quality tier, rebuilding the frets, markers and strings
+   * with its divisions and setting the neck material and vibration.
+   */
+  void applyQuality(int tier) {
+    if (tier == _quality) {
+      return;
+    }
+    _quality = tier;
+    if (_frets != null) {
+      List<Node> children = _guitar.getChildren();
+      MeshView frets = createFrets(_markerMaterial);
+      children.set(children.indexOf(_frets), frets);
+      _frets = frets;
+      replaceFretMarkers();
+    }
+    for (GuitarString3D guitarString : _guitarStrings) {
+      guitarString.setDivisions(STRING_DIVISIONS[tier]);
+    }
+    applyNeckMaterial();
+    _stringVibrator.setVibrateReleased(VIBRATE_RELEASED[tier]);
+  }
+
+  void applyNeckMaterial() {
+    if (TEXTURED_NECK[_quality] && _woodImage != null) {
+      _woodMaterial.setDiffuseColor(Color.WHITE);
+      _woodMaterial.setDiffuseMap(_woodImage);
+    }
+    else {
+      _woodMaterial.setDiffuseMap(null);
+      _woodMaterial.setDiffuseColor(WOOD_COLOR);
+    }
+  }
+
+  void createMidiPicker() {
+    _midiPicker = new CylinderPicker(
+      300, 300, PICKER_SLOTS,
+      INITIAL_INST_PICKER_FACE,
+      new InstrumentTiles(_midiPickerImage)
+    );
+    _midiPicker.setTranslateZ(400);
+    _midiPicker.setSettleDelay(new Duration(PICKER_SETTLE_MILLIS));
+    // Settling comes before any pick, and ends the audition even when
+    // the picker comes back to the instrument already playing
+    _midiPicker.setOnItemSettled((int is) -> stopAudition());
+    _midiPicker.setOnItemPicked((int ip) -> {
+      int midiInstNum = Inst2MidiLookup.getMidiByPickerIdx(ip);
+      createFretboard(midiInstNum);
+    });
+    _midiPicker.setOnItemBrowsed((int ib) -> {
+      prefetchInstrumentsNear(ib);
+      if (PICKER_AUDITION) {
+        audition(Inst2MidiLookup.getMidiByPickerIdx(ib));
+      }
+    });
+    _midiPicker.setOnDismissRequested(dismissType -> {
+      _hideMidiPicker.play();
+    });
+
+    _showMidiPicker =
+      new TranslateTransition(
+        new Duration(2000),
+        _midiPicker
+      );
+    _showMidiPicker.setFromZ(400);
+    _showMidiPicker.setToZ(-100);
+
+    _hideMidiPicker =
+      new TranslateTransition(
+        new Duration(1000),
+        _midiPicker
+      );
+    _hideMidiPicker.setFromZ(-100);
+    _hideMidiPicker.setToZ(400);
+
+    _showHideMidiPicker = new SequentialTransition();
+
+    _guitar.getChildren().add(_midiPicker);
   }
 
   void showMidiPicker(boolean hideAfterShow) {
+    if (_midiPicker == null) {
+      createMidiPicker();
+    }
     if (hideAfterShow) {
       _showHideMidiPicker.getChildren().setAll(_showMidiPicker,
                                                _hideMidiPicker);
@@ -274,16 +581,55 @@ public class ZenGuitar3D extends Application {
     _midiPicker.rotateToFace(_midiPicker.getCurFace(), true);
   }
 
-  Cylinder createFretMarker(int markerNum, PhongMaterial mat) {
-    double fretWidth = STRING_WIDTH / NUM_FRETS;
+  /**
+   * Creates the frets for every string as one mesh.  The frets line up
+   * across the strings, so each is a single bar the height of the neck.
+   */
+  MeshView createFrets(PhongMaterial mat) {
+    CylinderMeshBuilder builder =
+      new CylinderMeshBuilder(MESH_DIVISIONS[_quality]);
+    for (int idx = 0; idx < NUM_FRETS + 1; idx++) {
+      // Make one fret bar thicker to indicate it is the nut
+      double radius = idx == 1 ? 6 : 3;
+      builder.addCylinder(_fretScale.getFretX(idx) - STRING_WIDTH / 2,
+                          0, 0, radius, NECK_HEIGHT, false);
+    }
+    return createStaticMeshView(builder, mat);
+  }
+
+  MeshView createFretMarkers(PhongMaterial mat) {
+    CylinderMeshBuilder builder =
+      new CylinderMeshBuilder(MESH_DIVISIONS[_quality]);
+    // Markers 6 to 9 all sit at fret 0, so only one of them is needed
+    for (int markerNum = 0; markerNum <= 6; markerNum++) {
+      addFretMarker(builder, markerNum);
+    }
+    return createStaticMeshView(builder, mat);
+  }
+
+  // Rebuilds the markers in place, e.g. after the number of strings
+  // they're spaced by has changed
+  void replaceFretMarkers() {
+    List<Node> children = _guitar.getChildren();
+    MeshView fretMarkers = createFretMarkers(_markerMaterial);
+    children.set(children.indexOf(_fretMarkers), fretMarkers);
+    _fretMarkers = fretMarkers;
+  }
+
+  MeshView createStaticMeshView(CylinderMeshBuilder builder,
+                                PhongMaterial mat) {
+    MeshView meshView = new MeshView(builder.build());
+    meshView.setMaterial(mat);
+    meshView.setCullFace(CullFace.BACK);
+    // Touches go through to the strings behind
+    meshView.setMouseTransparent(true);
+    return meshView;
+  }
+
+  void addFretMarker(CylinderMeshBuilder builder, int markerNum) {
     int fretNum = 0;
     boolean topMarker = false;
     boolean bottomMarker = false;
-    Cylinder fretMarker =
-      new Cylinder(STRING_WIDTH / NUM_FRETS / 3, 1);
-    fretMarker.setMaterial(mat);
-    fretMarker.setRotationAxis(Rotate.X_AXIS);
-    fretMarker.setRotate(90);
     switch (markerNum) {
       case 0:
         fretNum = 3;
@@ -306,38 +652,70 @@ public class ZenGuitar3D extends Application {
         bottomMarker = true;
         break;
     }
-    fretMarker.setTranslateX(fretWidth * (fretNum + 0.5)
-                             - STRING_WIDTH / 2);
+    double markerY = 0;
     if (topMarker) {
-      fretMarker.setTranslateY(-NECK_HEIGHT / _numStrings);
+      markerY = -NECK_HEIGHT / _numStrings;
     }
     else if(bottomMarker) {
-      fretMarker.setTranslateY(NECK_HEIGHT / _numStrings);
+      markerY = NECK_HEIGHT / _numStrings;
     }
-    return fretMarker;
+    builder.addCylinder(_fretScale.getSpaceCenterX(fretNum) - STRING_WIDTH / 2,
+                        markerY, 0, _fretScale.getSpaceWidth(fretNum) / 3,
+                        1, true);
   }
 
+  /**
+   * Shows the fretboard layout for an instrument and sets the strings to
+   * play it.  Layouts are cached, and switching between them retunes
+   * and reuses the existing strings rather than creating new ones.
+   */
   void createFretboard(int midiInstNum) {
     InstConfig instConfig =
       InstConfig.getInstConfigForMidi(midiInstNum);
-    _numStrings = instConfig.getNumStrings();
-    int openNoteVals[] = instConfig.getOpenNoteVals();
-    _stringHeight = NECK_HEIGHT / _numStrings;
-    _guitarStringsContainer.getChildren().removeAll();
-    for (int idx = 0; idx < _numStrings; idx++) {
-      _guitarStringsContainer.getChildren().add(
-        new GuitarString3D(
-          LOW_NOTE + openNoteVals[idx],
-          NUM_FRETS,
-          STRING_WIDTH,
-          _stringHeight,
-          this)
-      );
+    FretboardLayout layout = _fretboardLayouts.computeIfAbsent(
+      FretboardLayout.keyFor(instConfig),
+      key -> new FretboardLayout(instConfig, LOW_NOTE, NECK_HEIGHT));
+    if (layout != _curFretboardLayout) {
+      applyFretboardLayout(layout);
     }
     setStringsToInstrument(midiInstNum);
     setStringsToBend(instConfig.isBendEnabled());
   }
 
+  void applyFretboardLayout(FretboardLayout layout) {
+    boolean numStringsChanged = layout.getNumStrings() != _numStrings;
+    _numStrings = layout.getNumStrings();
+    _stringHeight = layout.getStringHeight();
+    for (int idx = 0; idx < _numStrings; idx++) {
+      if (idx == _guitarStrings.size()) {
+        _guitarStrings.add(
+          new GuitarString3D(
+            idx,
+            layout.getOpenNoteValue(idx),
+            NUM_FRETS,
+            STRING_WIDTH,
+            _stringHeight,
+            this)
+        );
+      }
+      else {
+        _guitarStrings.get(idx).configure(layout.getOpenNoteValue(idx),
+                                          _stringHeight);
+      }
+    }
+    // Strings no longer showing must not keep sounding
+    for (int idx = _numStrings; idx < _guitarStrings.size(); idx++) {
+      _guitarStrings.get(idx).silence();
+    }
+    _guitarStringsContainer.getChildren()
+      .setAll(_guitarStrings.subList(0, _numStrings));
+    // The 12th fret markers are spaced by the string height
+    if (numStringsChanged && _fretMarkers != null) {
+      replaceFretMarkers();
+    }
+    _curFretboardLayout = layout;
+  }
+
   void setMuteMode(boolean muteMode) {
     _muteMode = muteMode;
   }
@@ -351,6 +729,63 @@ public class ZenGuitar3D extends Application {
     _goHomeAnim.playFromStart();
   }
 
+  int countRunningAnimations() {
+    int count = 0;
+    Animation[] animations = {
+      _goHomeAnim, _showMidiPicker, _hideMidiPicker, _showHideMidiPicker
+    };
+    for (Animation animation : animations) {
+      if (animation != null
+          && animation.getStatus() == Animation.Status.RUNNING) {
+        count++;
+      }
+    }
+    if (_midiPicker != null && _midiPicker.isRotating()) {
+      count++;
+    }
+    if (_stringVibrator.isRunning()) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Prefetches the instruments on the picker faces around a face,
+   * nearest first.
+   */
+  void prefetchInstrumentsNear(int face) {
+    int numFaces = Inst2MidiLookup.getNumPickerFaces();
+    int[] midiInstNums = new int[PREFETCH_FACE_RADIUS * 2 + 1];
+    midiInstNums[0] = Inst2MidiLookup.getMidiByPickerIdx(face);
+    for (int dist = 1; dist <= PREFETCH_FACE_RADIUS; dist++) {
+      midiInstNums[dist * 2 - 1] = Inst2MidiLookup
+        .getMidiByPickerIdx((face + dist) % numFaces);
+      midiInstNums[dist * 2] = Inst2MidiLookup
+        .getMidiByPickerIdx((face - dist + numFaces) % numFaces);
+    }
+    _synthEngine.prefetchInstruments(midiInstNums);
+  }
+
+  /**
+   * Plays a single note in an instrument being previewed in the picker,
+   * stopping the one before.
+   */
+  void audition(int midiInstNum) {
+    stopAudition();
+    if (_numStrings < InstConfigRegistry.MAX_STRINGS) {
+      _synthEngine.changeInstrument(AUDITION_CHANNEL, midiInstNum - 1);
+      _synthEngine.noteOn(AUDITION_CHANNEL, AUDITION_NOTE, 100);
+      _auditioning = true;
+    }
+  }
+
+  void stopAudition() {
+    if (_auditioning) {
+      _synthEngine.noteOff(AUDITION_CHANNEL, AUDITION_NOTE);
+      _auditioning = false;
+    }
+  }
+
   void setStringsToInstrument(int midiInstNum) {
     for (Node guitarString3D :
         _guitarStringsContainer.getChildren()) {